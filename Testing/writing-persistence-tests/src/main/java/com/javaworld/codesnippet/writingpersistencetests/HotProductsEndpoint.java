@@ -0,0 +1,30 @@
+package com.javaworld.codesnippet.writingpersistencetests;
+
+import java.util.List;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+/**
+ * Sample usage: "curl $HOST:$PORT/actuator/hotproducts?limit=10".
+ */
+@Component
+@Endpoint(id = "hotproducts")
+public class HotProductsEndpoint {
+
+	private static final int DEFAULT_LIMIT = 20;
+
+	private final ProductUpdater updater;
+
+	public HotProductsEndpoint(ProductUpdater updater) {
+		this.updater = updater;
+	}
+
+	@ReadOperation
+	public List<ProductUpdater.ConflictRate> hotProducts(@Nullable Integer limit) {
+		return updater.hotProducts((limit == null) ? DEFAULT_LIMIT : limit);
+	}
+
+}
@@ -0,0 +1,19 @@
+package com.javaworld.codesnippet.writingpersistencetests;
+
+import java.util.stream.Stream;
+
+public interface ProductBulkIngest {
+
+	/**
+	 * Inserts new products in JDBC batches of hibernate.jdbc.batch_size, for loads too large for saveAll.
+	 * The persistence context is flushed and cleared after every batch, so memory use does not grow with
+	 * the number of products, and the inserted entities are detached when this returns.
+	 *
+	 * All the products are inserted in one transaction, so a failing product, e.g. a duplicate productId,
+	 * rolls back the whole load.
+	 *
+	 * @return the number of inserted products
+	 */
+	long ingest(Stream<ProductEntity> products);
+
+}
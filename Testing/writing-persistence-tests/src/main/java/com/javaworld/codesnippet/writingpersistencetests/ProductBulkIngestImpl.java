@@ -0,0 +1,41 @@
+package com.javaworld.codesnippet.writingpersistencetests;
+
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.transaction.annotation.Transactional;
+
+class ProductBulkIngestImpl implements ProductBulkIngest {
+
+	@PersistenceContext
+	private EntityManager entityManager;
+
+	private final int batchSize;
+
+	ProductBulkIngestImpl(@Value("${spring.jpa.properties.hibernate.jdbc.batch_size}") int batchSize) {
+		this.batchSize = batchSize;
+	}
+
+	@Override
+	@Transactional
+	public long ingest(Stream<ProductEntity> products) {
+		long count = 0;
+		Iterator<ProductEntity> iterator = products.iterator();
+		while (iterator.hasNext()) {
+			entityManager.persist(iterator.next());
+			if (++count % batchSize == 0) {
+				// Sends the batch and forgets its entities, otherwise every flush would dirty check all of them
+				entityManager.flush();
+				entityManager.clear();
+			}
+		}
+		entityManager.flush();
+		entityManager.clear();
+		return count;
+	}
+
+}
@@ -0,0 +1,142 @@
+package com.javaworld.codesnippet.writingpersistencetests;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+/**
+ * Read-through cache of {@link ProductRepository#findByProductId(int)}, bounded by
+ * app.product-cache.max-size and app.product-cache.ttl.
+ *
+ * Updates and deletes committed through this node replace the cached entries, see
+ * {@link ProductCacheListener}, and an entry is only ever replaced by a newer @Version of the same row, so
+ * a read that raced with a write can not put back the version it read. Reads therefore never return a
+ * version older than one this node has written, as long as the product is not deleted and created again.
+ * Ids do not tell which row is newer, e.g. with pooled id blocks per node or after a restart, so an entry
+ * for another row always replaces the cached one; a read that raced with a delete and re-create may cache
+ * the deleted row until the ttl expires it. Writes of other nodes are seen once the ttl has expired the
+ * entries.
+ *
+ * Callers get copies of the cached products; they can be changed and saved, with the usual optimistic
+ * locking. Products that do not exist are not cached.
+ *
+ * Besides the Caffeine cache metrics, e.g. the hit ratio from cache.gets, it records the age of the
+ * entries it serves, product.cache.age, and the reads that found a newer version cached once they were
+ * done, product.cache.stale.loads.
+ */
+@Component
+public class ProductCache {
+
+	private final ProductRepository repository;
+	private final Cache<Integer, Entry> cache;
+
+	private final Timer age;
+	private final Counter staleLoads;
+
+	public ProductCache(
+			ProductRepository repository,
+			MeterRegistry registry,
+			@Value("${app.product-cache.max-size}") long maxSize,
+			@Value("${app.product-cache.ttl}") Duration ttl) {
+
+		this.repository = repository;
+		this.cache = CaffeineCacheMetrics.monitor(registry,
+				Caffeine.newBuilder().maximumSize(maxSize).expireAfterWrite(ttl).recordStats().build(), "product");
+
+		this.age = Timer.builder("product.cache.age")
+				.description("Age of the cached products that were served")
+				.register(registry);
+		this.staleLoads = Counter.builder("product.cache.stale.loads")
+				.description("Reads from the database that were not cached, a newer version had been written meanwhile")
+				.register(registry);
+	}
+
+	public Optional<ProductEntity> findByProductId(int productId) {
+		Entry cached = cache.getIfPresent(productId);
+		if (cached != null && !cached.deleted) {
+			age.record(System.nanoTime() - cached.createdNanos, TimeUnit.NANOSECONDS);
+			return Optional.of(copy(cached.product));
+		}
+
+		// Tombstones are read through as well, the product may have been created again
+
+		Optional<ProductEntity> loaded = repository.findByProductId(productId);
+		loaded.ifPresent(this::loaded);
+		return loaded;
+	}
+
+	void loaded(ProductEntity product) {
+		Entry entry = new Entry(copy(product), false);
+		if (replace(entry) != entry) {
+			staleLoads.increment();
+		}
+	}
+
+	/**
+	 * @param product a copy of the product as it was written, see {@link #copy(ProductEntity)}
+	 */
+	void written(ProductEntity product) {
+		replace(new Entry(product, false));
+	}
+
+	/**
+	 * @param product a copy of the product as it was deleted, see {@link #copy(ProductEntity)}
+	 */
+	void deleted(ProductEntity product) {
+		replace(new Entry(product, true));
+	}
+
+	private Entry replace(Entry entry) {
+		return cache.asMap().merge(entry.product.getProductId(), entry, (cached, next) -> next.newerThan(cached) ? next : cached);
+	}
+
+	static ProductEntity copy(ProductEntity product) {
+		ProductEntity copy = new ProductEntity(product.getProductId(), product.getName(), product.getWeight());
+		copy.setId(product.getId());
+		copy.setVersion(product.getVersion());
+		return copy;
+	}
+
+	/**
+	 * A product, or the tombstone of a deleted one, that keeps reads that started before the delete from
+	 * caching the product again. Tombstones are never served.
+	 */
+	private static final class Entry {
+
+		final ProductEntity product;
+		final boolean deleted;
+		final long createdNanos = System.nanoTime();
+
+		Entry(ProductEntity product, boolean deleted) {
+			this.product = product;
+			this.deleted = deleted;
+		}
+
+		/**
+		 * Only entries of the same row, i.e. id, are ordered, by @Version; an entry of another row is taken
+		 * as newer. A tombstone is newer than the version it deleted.
+		 */
+		boolean newerThan(Entry other) {
+			if (!product.getId().equals(other.product.getId())) {
+				return true;
+			}
+			int byVersion = Integer.compare(product.getVersion(), other.product.getVersion());
+			if (byVersion != 0) {
+				return byVersion > 0;
+			}
+			return deleted && !other.deleted;
+		}
+	}
+
+}
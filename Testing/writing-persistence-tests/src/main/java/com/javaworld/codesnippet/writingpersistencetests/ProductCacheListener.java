@@ -0,0 +1,51 @@
+package com.javaworld.codesnippet.writingpersistencetests;
+
+import javax.persistence.PostRemove;
+import javax.persistence.PostUpdate;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Passes updated and deleted products to the {@link ProductCache}, once their transaction has committed,
+ * so that it never holds changes that were rolled back.
+ *
+ * Inserts are not passed on, products that do not exist are not cached, and the bulk ingest does not
+ * register a callback per product.
+ */
+public class ProductCacheListener {
+
+	// Looked up when first used, the cache needs the repository, which is built after the entity listeners
+	private final ObjectProvider<ProductCache> cache;
+
+	public ProductCacheListener(ObjectProvider<ProductCache> cache) {
+		this.cache = cache;
+	}
+
+	@PostUpdate
+	void updated(ProductEntity product) {
+		ProductEntity written = ProductCache.copy(product);
+		afterCommit(() -> cache.ifAvailable(c -> c.written(written)));
+	}
+
+	@PostRemove
+	void removed(ProductEntity product) {
+		ProductEntity deleted = ProductCache.copy(product);
+		afterCommit(() -> cache.ifAvailable(c -> c.deleted(deleted)));
+	}
+
+	private static void afterCommit(Runnable action) {
+		if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+			action.run();
+			return;
+		}
+		TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+			@Override
+			public void afterCommit() {
+				action.run();
+			}
+		});
+	}
+
+}
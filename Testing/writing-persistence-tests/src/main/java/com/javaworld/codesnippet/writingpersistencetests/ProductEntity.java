@@ -1,18 +1,30 @@
 package com.javaworld.codesnippet.writingpersistencetests;
 
 import javax.persistence.Entity;
+import javax.persistence.EntityListeners;
 import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.Index;
 import javax.persistence.Table;
 import javax.persistence.Version;
 
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+
 @Entity
+@EntityListeners(ProductCacheListener.class)
 @Table(name = "product", indexes = { @Index(name = "product_unique_idx", unique = true, columnList = "productId") })
 public class ProductEntity {
 
+	// Ids are reserved 50 at a time (pooled-lo), so inserts need one round trip to the id table per 50
+	// rows instead of one per row, and, unlike IDENTITY columns, do not stop Hibernate from batching them
 	@Id
-	@GeneratedValue
+	@GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "product_id")
+	@GenericGenerator(name = "product_id", strategy = "org.hibernate.id.enhanced.SequenceStyleGenerator", parameters = {
+			@Parameter(name = "sequence_name", value = "product_id_seq"),
+			@Parameter(name = "increment_size", value = "50"),
+			@Parameter(name = "optimizer", value = "pooled-lo") })
 	private Integer id;
 
 	@Version
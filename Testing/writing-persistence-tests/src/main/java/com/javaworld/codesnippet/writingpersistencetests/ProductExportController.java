@@ -0,0 +1,32 @@
+package com.javaworld.codesnippet.writingpersistencetests;
+
+import java.io.IOException;
+
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+public class ProductExportController {
+
+	private final ProductExporter exporter;
+
+	public ProductExportController(ProductExporter exporter) {
+		this.exporter = exporter;
+	}
+
+	/**
+	 * Sample usage: "curl $HOST:$PORT/products/export > products.ndjson".
+	 *
+	 * The products are written to the response as they are read, so the export of the whole table runs in
+	 * bounded heap, however large it is.
+	 */
+	@GetMapping(value = "/products/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+	public void exportAll(HttpServletResponse response) throws IOException {
+		response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+		exporter.exportAll(response.getOutputStream());
+	}
+
+}
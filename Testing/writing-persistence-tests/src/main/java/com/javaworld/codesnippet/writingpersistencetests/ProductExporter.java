@@ -0,0 +1,51 @@
+package com.javaworld.codesnippet.writingpersistencetests;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.stream.Stream;
+
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+@Service
+public class ProductExporter {
+
+	private final ProductRepository repository;
+	private final ObjectWriter writer;
+	private final ObjectMapper mapper;
+
+	public ProductExporter(ProductRepository repository, ObjectMapper mapper) {
+		this.repository = repository;
+		this.mapper = mapper;
+		// The output is flushed as its buffer fills up, not after every product
+		this.writer = mapper.writerFor(ProductEntity.class).without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+	}
+
+	/**
+	 * Writes all the products as NDJSON, one JSON object per line, ordered by productId.
+	 *
+	 * @return the number of written products
+	 */
+	@Transactional(readOnly = true)
+	public long exportAll(OutputStream out) throws IOException {
+		long count = 0;
+		try (Stream<ProductEntity> products = repository.streamAll();
+				JsonGenerator generator = mapper.getFactory().createGenerator(out)) {
+			generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+			// Lines are separated by the newlines only, not by the default space between root values
+			generator.setRootValueSeparator(null);
+			for (ProductEntity product : (Iterable<ProductEntity>) products::iterator) {
+				writer.writeValue(generator, product);
+				generator.writeRaw('\n');
+				count++;
+			}
+		}
+		return count;
+	}
+
+}
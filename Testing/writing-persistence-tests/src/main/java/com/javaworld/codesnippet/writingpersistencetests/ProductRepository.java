@@ -1,10 +1,27 @@
 package com.javaworld.codesnippet.writingpersistencetests;
 
 import java.util.Optional;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.repository.PagingAndSortingRepository;
 
-public interface ProductRepository extends PagingAndSortingRepository<ProductEntity, Integer> {
+public interface ProductRepository extends PagingAndSortingRepository<ProductEntity, Integer>, ProductBulkIngest, ProductStreaming {
 
 	Optional<ProductEntity> findByProductId(int productId);
 
-}
\ No newline at end of file
+	/**
+	 * Keyset pagination: the next page starts after the last productId of the previous one, so every page
+	 * is a range scan of product_unique_idx, as fast for the last page as for the first, and there is no
+	 * count query. Start with 0, or any productId lower than all of them.
+	 */
+	default Slice<ProductEntity> findProductsAfter(int productId, int limit) {
+		return findByProductIdGreaterThanOrderByProductIdAsc(productId, PageRequest.ofSize(limit));
+	}
+
+	/**
+	 * Only the size of the pageable is meant to be used, see {@link #findProductsAfter(int, int)}.
+	 */
+	Slice<ProductEntity> findByProductIdGreaterThanOrderByProductIdAsc(int productId, Pageable pageable);
+
+}
@@ -0,0 +1,17 @@
+package com.javaworld.codesnippet.writingpersistencetests;
+
+import java.util.stream.Stream;
+
+public interface ProductStreaming {
+
+	/**
+	 * All the products ordered by productId, read through a server-side cursor that fetches
+	 * app.product.stream-fetch-size rows at a time, and detached as they are read, so neither the JDBC
+	 * driver nor the persistence context ever holds more than a fetch of them.
+	 *
+	 * Must be called in a transaction, preferably a read-only one, and the stream must be consumed and
+	 * closed before the transaction ends.
+	 */
+	Stream<ProductEntity> streamAll();
+
+}
@@ -0,0 +1,36 @@
+package com.javaworld.codesnippet.writingpersistencetests;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.QueryHints.HINT_READONLY;
+
+import java.util.stream.Stream;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+class ProductStreamingImpl implements ProductStreaming {
+
+	@PersistenceContext
+	private EntityManager entityManager;
+
+	private final int fetchSize;
+
+	ProductStreamingImpl(@Value("${app.product.stream-fetch-size}") int fetchSize) {
+		this.fetchSize = fetchSize;
+	}
+
+	@Override
+	@Transactional(propagation = Propagation.MANDATORY)
+	public Stream<ProductEntity> streamAll() {
+		return entityManager.createQuery("select p from ProductEntity p order by p.productId", ProductEntity.class)
+				.setHint(HINT_FETCH_SIZE, fetchSize)
+				.setHint(HINT_READONLY, true)
+				.getResultStream()
+				.peek(entityManager::detach);
+	}
+
+}
@@ -0,0 +1,175 @@
+package com.javaworld.codesnippet.writingpersistencetests;
+
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Applies changes to products with optimistic locking, and retries the changes that lose to a concurrent
+ * update: every attempt reloads the product in a new transaction and applies the change to it again.
+ * Attempts are spaced by an exponential backoff with full jitter, a random delay up to
+ * app.product-update.initial-backoff doubled per attempt and capped at app.product-update.max-backoff,
+ * so that writers that conflicted spread out instead of conflicting again. After
+ * app.product-update.max-attempts the conflict is rethrown.
+ *
+ * The change may be applied more than once, so it must only depend on the product it is given.
+ *
+ * Records the attempts per update, product.update.attempts, the conflicts, product.update.conflicts, and
+ * the updates that gave up, product.update.exhausted. The conflict rates of the products with the most
+ * conflicts, the hot rows, are kept apart, see {@link #hotProducts(int)}; per product meters would create
+ * one time series per product.
+ */
+@Component
+public class ProductUpdater {
+
+	private final ProductRepository repository;
+	private final TransactionTemplate transaction;
+
+	private final int maxAttempts;
+	private final long initialBackoffMillis;
+	private final long maxBackoffMillis;
+
+	private final DistributionSummary attempts;
+	private final Counter conflicts;
+	private final Counter exhausted;
+
+	// Frequency aware eviction keeps the products that conflict most often
+	private final Cache<Integer, ConflictRate> conflictRates;
+
+	public ProductUpdater(
+			ProductRepository repository,
+			PlatformTransactionManager transactionManager,
+			MeterRegistry registry,
+			@Value("${app.product-update.max-attempts}") int maxAttempts,
+			@Value("${app.product-update.initial-backoff}") Duration initialBackoff,
+			@Value("${app.product-update.max-backoff}") Duration maxBackoff,
+			@Value("${app.product-update.tracked-products}") long trackedProducts) {
+
+		this.repository = repository;
+		this.transaction = new TransactionTemplate(transactionManager);
+		this.transaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+
+		this.maxAttempts = maxAttempts;
+		this.initialBackoffMillis = initialBackoff.toMillis();
+		this.maxBackoffMillis = maxBackoff.toMillis();
+
+		this.attempts = DistributionSummary.builder("product.update.attempts")
+				.description("Attempts per update, including the last one")
+				.register(registry);
+		this.conflicts = Counter.builder("product.update.conflicts")
+				.description("Attempts that lost to a concurrent update of the product")
+				.register(registry);
+		this.exhausted = Counter.builder("product.update.exhausted")
+				.description("Updates that gave up after max-attempts conflicts")
+				.register(registry);
+
+		this.conflictRates = Caffeine.newBuilder().maximumSize(trackedProducts).build();
+	}
+
+	/**
+	 * @return the updated product, or empty if there is no product with the productId
+	 * @throws OptimisticLockingFailureException if all the attempts conflicted
+	 */
+	public Optional<ProductEntity> update(int productId, Consumer<ProductEntity> change) {
+		for (int attempt = 1;; attempt++) {
+			try {
+				Optional<ProductEntity> updated = transaction.execute(status -> repository.findByProductId(productId)
+						.map(product -> {
+							change.accept(product);
+							return repository.save(product);
+						}));
+
+				attempts.record(attempt);
+				ConflictRate rate = conflictRates.getIfPresent(productId);
+				if (rate != null) {
+					rate.attempts.increment();
+				}
+				return updated;
+
+			} catch (OptimisticLockingFailureException e) {
+				conflicts.increment();
+				ConflictRate rate = conflictRates.get(productId, ConflictRate::new);
+				rate.attempts.increment();
+				rate.conflicts.increment();
+
+				if (attempt >= maxAttempts) {
+					attempts.record(attempt);
+					exhausted.increment();
+					throw e;
+				}
+				backoff(attempt);
+			}
+		}
+	}
+
+	/**
+	 * @return the products with the most conflicts since they first conflicted, most conflicts first
+	 */
+	public List<ConflictRate> hotProducts(int limit) {
+		return conflictRates.asMap().values().stream()
+				.sorted(Comparator.comparingLong(ConflictRate::getConflicts).reversed())
+				.limit(limit)
+				.collect(Collectors.toList());
+	}
+
+	private void backoff(int attempt) {
+		long ceiling = Math.min(maxBackoffMillis, initialBackoffMillis << Math.min(attempt - 1, 30));
+		try {
+			Thread.sleep(ThreadLocalRandom.current().nextLong(ceiling + 1));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while waiting to retry the update", e);
+		}
+	}
+
+	public static final class ConflictRate {
+
+		private final int productId;
+		private final LongAdder attempts = new LongAdder();
+		private final LongAdder conflicts = new LongAdder();
+
+		ConflictRate(int productId) {
+			this.productId = productId;
+		}
+
+		public int getProductId() {
+			return productId;
+		}
+
+		/**
+		 * @return the attempts to update the product since it first conflicted
+		 */
+		public long getAttempts() {
+			return attempts.sum();
+		}
+
+		public long getConflicts() {
+			return conflicts.sum();
+		}
+
+		public double getConflictRate() {
+			long attempts = getAttempts();
+			return (attempts == 0) ? 0 : (double) getConflicts() / attempts;
+		}
+	}
+
+}
@@ -0,0 +1,71 @@
+package com.javaworld.codesnippet.writingpersistencetests;
+
+import static java.util.stream.IntStream.rangeClosed;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.transaction.annotation.Propagation.NOT_SUPPORTED;
+
+import java.util.function.IntBinaryOperator;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Insert throughput of saveAll and of the bulk ingest, run with:
+ * mvn test -Dgroups=benchmark -DexcludedGroups= -Dtest=BulkIngestBenchmarkTests [-Dbenchmark.products=1000000]
+ */
+@Tag("benchmark")
+@DataJpaTest
+@Transactional(propagation = NOT_SUPPORTED)
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+class BulkIngestBenchmarkTests extends MySqlTestBase {
+
+	private static final int PRODUCTS = Integer.getInteger("benchmark.products", 100_000);
+	private static final int WARMUP_PRODUCTS = 10_000;
+
+	@Autowired
+	private ProductRepository repository;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Test
+	void ingestThroughput() {
+
+		IntBinaryOperator saveAll = (from, to) -> {
+			repository.saveAll(products(from, to).collect(Collectors.toList()));
+			return to - from + 1;
+		};
+		IntBinaryOperator ingest = (from, to) -> (int) repository.ingest(products(from, to));
+
+		// Both run once before they are measured, so that neither is measured with a cold JIT or pool
+		run("saveAll", saveAll, WARMUP_PRODUCTS);
+		run("ingest", ingest, WARMUP_PRODUCTS);
+
+		run("saveAll", saveAll, PRODUCTS);
+		run("ingest", ingest, PRODUCTS);
+	}
+
+	private void run(String name, IntBinaryOperator insert, int count) {
+		jdbcTemplate.update("delete from product");
+
+		long start = System.nanoTime();
+		int inserted = insert.applyAsInt(1, count);
+		long nanos = System.nanoTime() - start;
+
+		assertEquals(count, inserted);
+		assertEquals(count, repository.count());
+		System.out.printf("%-8s %,10d products %,8d ms %,10.0f products/s%n", name, count, nanos / 1_000_000, count * 1e9 / nanos);
+	}
+
+	private static Stream<ProductEntity> products(int from, int to) {
+		return rangeClosed(from, to).mapToObj(i -> new ProductEntity(i, "name " + i, i));
+	}
+
+}
@@ -0,0 +1,26 @@
+package com.javaworld.codesnippet.writingpersistencetests;
+
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.MySQLContainer;
+
+/**
+ * One MySQL container for all the test classes that extend this class, started with the first of them.
+ */
+public abstract class MySqlTestBase {
+
+	private static MySQLContainer<?> database = new MySQLContainer<>("mysql:5.7.32");
+
+	static {
+		database.start();
+	}
+
+	@DynamicPropertySource
+	static void databaseProperties(DynamicPropertyRegistry registry) {
+		registry.add("spring.datasource.url", database::getJdbcUrl);
+		registry.add("spring.datasource.username", database::getUsername);
+		registry.add("spring.datasource.password", database::getPassword);
+		registry.add("spring.jpa.hibernate.ddl-auto", () -> "create-drop");
+	}
+
+}
@@ -0,0 +1,77 @@
+package com.javaworld.codesnippet.writingpersistencetests;
+
+import static java.util.stream.IntStream.rangeClosed;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.data.domain.Sort.Direction.ASC;
+import static org.springframework.transaction.annotation.Propagation.NOT_SUPPORTED;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Supplier;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Latency of reading page 10,000 with offset pagination, findAll(Pageable), and with keyset pagination,
+ * findProductsAfter, run with:
+ * mvn test -Dgroups=benchmark -DexcludedGroups= -Dtest=PagingBenchmarkTests
+ */
+@Tag("benchmark")
+@DataJpaTest
+@Transactional(propagation = NOT_SUPPORTED)
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+class PagingBenchmarkTests extends MySqlTestBase {
+
+	private static final int PAGE_SIZE = 20;
+	private static final int PAGE = 10_000;
+	private static final int RUNS = 50;
+
+	@Autowired
+	private ProductRepository repository;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Test
+	void deepPageLatency() {
+
+		jdbcTemplate.update("delete from product");
+		repository.ingest(rangeClosed(1, PAGE * PAGE_SIZE).mapToObj(i -> new ProductEntity(i, "name " + i, i)));
+
+		// Page 10,000, zero-based 9,999, starts after the productId (PAGE - 1) * PAGE_SIZE
+		int firstProductId = (PAGE - 1) * PAGE_SIZE + 1;
+		long offset = measure("offset", () -> repository.findAll(PageRequest.of(PAGE - 1, PAGE_SIZE, ASC, "productId")).getContent());
+		long keyset = measure("keyset", () -> repository.findProductsAfter(firstProductId - 1, PAGE_SIZE).getContent());
+
+		System.out.printf("keyset is %.1f times faster%n", (double) offset / keyset);
+
+		assertEquals(firstProductId, repository.findProductsAfter(firstProductId - 1, PAGE_SIZE).getContent().get(0).getProductId());
+		assertEquals(firstProductId,
+				repository.findAll(PageRequest.of(PAGE - 1, PAGE_SIZE, ASC, "productId")).getContent().get(0).getProductId());
+	}
+
+	/**
+	 * @return the median latency in microseconds, after as many warm up runs
+	 */
+	private long measure(String name, Supplier<List<ProductEntity>> page) {
+		long[] micros = new long[RUNS];
+		for (int run = -RUNS; run < RUNS; run++) {
+			long start = System.nanoTime();
+			assertEquals(PAGE_SIZE, page.get().size());
+			if (run >= 0) {
+				micros[run] = (System.nanoTime() - start) / 1000;
+			}
+		}
+		Arrays.sort(micros);
+		System.out.printf("%-8s page %,d: median %,8d us, p90 %,8d us%n", name, PAGE, micros[RUNS / 2], micros[RUNS * 9 / 10]);
+		return micros[RUNS / 2];
+	}
+
+}
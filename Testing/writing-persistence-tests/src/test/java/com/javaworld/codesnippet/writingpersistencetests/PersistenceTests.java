@@ -10,20 +10,26 @@ import static org.springframework.data.domain.Sort.Direction.ASC;
 import java.util.List;
 import java.util.Optional;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
 import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.test.context.DynamicPropertyRegistry;
 import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.IllegalTransactionStateException;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import static org.springframework.transaction.annotation.Propagation.NOT_SUPPORTED;
 
@@ -36,6 +42,12 @@ class PersistenceTests {
 	@Autowired
 	private ProductRepository repository;
 
+	@Autowired
+	private TestEntityManager entityManager;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
 	private ProductEntity savedEntity;
 	
 	@DynamicPropertySource
@@ -140,6 +152,62 @@ class PersistenceTests {
 		nextPage = testNextPage(nextPage, "[1009, 1010]", false);
 	}
 
+	@Test
+	void keysetPaging() {
+
+		repository.deleteAll();
+
+		List<ProductEntity> newProducts = rangeClosed(1001, 1010).mapToObj(i -> new ProductEntity(i, "name " + i, i))
+				.collect(Collectors.toList());
+		repository.saveAll(newProducts);
+
+		int lastProductId = 0;
+		lastProductId = testNextSlice(lastProductId, "[1001, 1002, 1003, 1004]", true);
+		lastProductId = testNextSlice(lastProductId, "[1005, 1006, 1007, 1008]", true);
+		lastProductId = testNextSlice(lastProductId, "[1009, 1010]", false);
+	}
+
+	private int testNextSlice(int lastProductId, String expectedProductIds, boolean expectsNextSlice) {
+		Slice<ProductEntity> productSlice = repository.findProductsAfter(lastProductId, 4);
+		List<Integer> productIds = productSlice.getContent().stream().map(p -> p.getProductId()).collect(Collectors.toList());
+		assertEquals(expectedProductIds, productIds.toString());
+		assertEquals(expectsNextSlice, productSlice.hasNext());
+		return productIds.get(productIds.size() - 1);
+	}
+
+	@Test
+	void streamAll() {
+
+		repository.saveAll(rangeClosed(1002, 1005).mapToObj(i -> new ProductEntity(i, "name " + i, i))
+				.collect(Collectors.toList()));
+
+		TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+		readOnly.setReadOnly(true);
+		List<Integer> productIds = readOnly.execute(status -> {
+			try (Stream<ProductEntity> products = repository.streamAll()) {
+				// Entities are detached as they are read, so the persistence context does not grow
+				return products.peek(p -> assertFalse(entityManager.getEntityManager().contains(p)))
+						.map(p -> p.getProductId()).collect(Collectors.toList());
+			}
+		});
+		assertEquals("[1, 1002, 1003, 1004, 1005]", productIds.toString());
+
+		// The stream would be closed with its transaction
+		assertThrows(IllegalTransactionStateException.class, () -> repository.streamAll());
+	}
+
+	@Test
+	void ingest() {
+
+		// 120 products span two full batches of 50 and a partial one
+		long ingested = repository.ingest(rangeClosed(2001, 2120).mapToObj(i -> new ProductEntity(i, "name " + i, i)));
+
+		assertEquals(120, ingested);
+		assertEquals(121, repository.count());
+		assertEquals("name 2001", repository.findByProductId(2001).get().getName());
+		assertEquals("name 2120", repository.findByProductId(2120).get().getName());
+	}
+
 	private Pageable testNextPage(Pageable nextPage, String expectedProductIds, boolean expectsNextPage) {
 		Page<ProductEntity> productPage = repository.findAll(nextPage);
 		assertEquals(expectedProductIds,
@@ -0,0 +1,112 @@
+package com.javaworld.codesnippet.writingpersistencetests;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.springframework.transaction.annotation.Propagation.NOT_SUPPORTED;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.annotation.Transactional;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+@DataJpaTest
+@Import({ ProductCache.class, SimpleMeterRegistry.class })
+@Transactional(propagation = NOT_SUPPORTED)
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+class ProductCacheTests extends MySqlTestBase {
+
+	@Autowired
+	private ProductRepository repository;
+
+	@Autowired
+	private ProductCache cache;
+
+	@Autowired
+	private MeterRegistry registry;
+
+	@BeforeEach
+	void setupDb() {
+		// The deleted products stay cached as tombstones, the new product 1 replaces its tombstone
+		repository.deleteAll();
+		repository.save(new ProductEntity(1, "n", 1));
+	}
+
+	@Test
+	void readThrough() {
+		double hits = hits();
+
+		ProductEntity first = cache.findByProductId(1).get();
+		ProductEntity second = cache.findByProductId(1).get();
+
+		assertNotSame(first, second);
+		assertEquals(first.getId(), second.getId());
+		assertEquals(first.getVersion(), second.getVersion());
+		assertEquals(hits + 1, hits());
+		assertFalse(cache.findByProductId(2).isPresent());
+	}
+
+	@Test
+	void updateReplacesCachedProduct() {
+		ProductEntity product = cache.findByProductId(1).get();
+		product.setName("n2");
+		repository.save(product);
+
+		double hits = hits();
+		ProductEntity found = cache.findByProductId(1).get();
+
+		assertEquals(hits + 1, hits());
+		assertEquals("n2", found.getName());
+		assertEquals(1, (int) found.getVersion());
+	}
+
+	@Test
+	void deleteReplacesCachedProduct() {
+		ProductEntity product = cache.findByProductId(1).get();
+		repository.delete(product);
+
+		assertFalse(cache.findByProductId(1).isPresent());
+	}
+
+	@Test
+	void staleReadIsNotCached() {
+		// Read before the update, but done after it
+		ProductEntity stale = repository.findByProductId(1).get();
+
+		ProductEntity product = cache.findByProductId(1).get();
+		product.setName("n2");
+		repository.save(product);
+
+		double staleLoads = registry.get("product.cache.stale.loads").counter().count();
+		cache.loaded(stale);
+
+		assertEquals(staleLoads + 1, registry.get("product.cache.stale.loads").counter().count());
+		assertEquals("n2", cache.findByProductId(1).get().getName());
+	}
+
+	@Test
+	void recreatedProductWithLowerIdReplacesCachedProduct() {
+		ProductEntity cached = cache.findByProductId(1).get();
+
+		// Created again on a node with a lower id block, its first version
+		ProductEntity recreated = new ProductEntity(1, "n2", 1);
+		recreated.setId(cached.getId() - 1);
+		recreated.setVersion(0);
+		cache.loaded(recreated);
+
+		ProductEntity found = cache.findByProductId(1).get();
+		assertEquals(recreated.getId(), found.getId());
+		assertEquals("n2", found.getName());
+	}
+
+	private double hits() {
+		return registry.get("cache.gets").tag("cache", "product").tag("result", "hit").functionCounter().count();
+	}
+
+}
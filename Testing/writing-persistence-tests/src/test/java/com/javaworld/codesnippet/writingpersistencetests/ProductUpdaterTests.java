@@ -0,0 +1,105 @@
+package com.javaworld.codesnippet.writingpersistencetests;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.springframework.transaction.annotation.Propagation.NOT_SUPPORTED;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.transaction.annotation.Transactional;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+@DataJpaTest(properties = {
+		"app.product-update.max-attempts=3",
+		"app.product-update.initial-backoff=1ms",
+		"app.product-update.max-backoff=5ms" })
+@Import({ ProductUpdater.class, SimpleMeterRegistry.class })
+@Transactional(propagation = NOT_SUPPORTED)
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+class ProductUpdaterTests extends MySqlTestBase {
+
+	@Autowired
+	private ProductRepository repository;
+
+	@Autowired
+	private ProductUpdater updater;
+
+	@Autowired
+	private MeterRegistry registry;
+
+	@BeforeEach
+	void setupDb() {
+		repository.deleteAll();
+		repository.save(new ProductEntity(1, "n", 1));
+		repository.save(new ProductEntity(2, "n", 1));
+	}
+
+	@Test
+	void conflictIsRetried() {
+		double conflicts = registry.get("product.update.conflicts").counter().count();
+		AtomicInteger calls = new AtomicInteger();
+
+		ProductEntity updated = updater.update(2, product -> {
+			if (calls.getAndIncrement() == 0) {
+				updateConcurrently(2);
+			}
+			product.setName("n2");
+		}).get();
+
+		// The change is applied again on top of the concurrent update
+		assertEquals(2, calls.get());
+		assertEquals("n2", updated.getName());
+		assertEquals(101, updated.getWeight());
+		assertEquals(2, (int) updated.getVersion());
+		assertEquals(conflicts + 1, registry.get("product.update.conflicts").counter().count());
+
+		// The conflict rates are kept across tests, every test uses its own product
+		ProductUpdater.ConflictRate rate = updater.hotProducts(10).stream().filter(r -> r.getProductId() == 2).findFirst().get();
+		assertEquals(2, rate.getAttempts());
+		assertEquals(0.5, rate.getConflictRate());
+	}
+
+	@Test
+	void conflictsGiveUpAfterMaxAttempts() {
+		double exhausted = registry.get("product.update.exhausted").counter().count();
+		AtomicInteger calls = new AtomicInteger();
+
+		assertThrows(OptimisticLockingFailureException.class, () -> updater.update(1, product -> {
+			calls.incrementAndGet();
+			updateConcurrently(1);
+			product.setName("n2");
+		}));
+
+		assertEquals(3, calls.get());
+		assertEquals(exhausted + 1, registry.get("product.update.exhausted").counter().count());
+		assertEquals("n", repository.findByProductId(1).get().getName());
+	}
+
+	@Test
+	void missingProductIsNotUpdated() {
+		assertFalse(updater.update(3, product -> product.setName("n2")).isPresent());
+	}
+
+	/**
+	 * Commits an update of the product in another transaction, on another thread.
+	 */
+	private void updateConcurrently(int productId) {
+		CompletableFuture.runAsync(() -> {
+			ProductEntity product = repository.findByProductId(productId).get();
+			product.setWeight(product.getWeight() + 100);
+			repository.save(product);
+		}).join();
+	}
+
+}
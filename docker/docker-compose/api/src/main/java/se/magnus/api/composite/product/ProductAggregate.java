@@ -1,11 +1,18 @@
 package se.magnus.api.composite.product;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import java.util.List;
 
+/**
+ * Parts that were not requested, see {@link ProductCompositeService#getProduct(int, List)}, are null
+ * and left out of the JSON.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
 public class ProductAggregate {
   private final int productId;
   private final String name;
-  private final int weight;
+  private final Integer weight;
+  private final RatingSummary ratings;
   private final List<RecommendationSummary> recommendations;
   private final List<ReviewSummary> reviews;
   private final ServiceAddresses serviceAddresses;
@@ -13,7 +20,8 @@ public class ProductAggregate {
   public ProductAggregate(
     int productId,
     String name,
-    int weight,
+    Integer weight,
+    RatingSummary ratings,
     List<RecommendationSummary> recommendations,
     List<ReviewSummary> reviews,
     ServiceAddresses serviceAddresses) {
@@ -21,6 +29,7 @@ public class ProductAggregate {
     this.productId = productId;
     this.name = name;
     this.weight = weight;
+    this.ratings = ratings;
     this.recommendations = recommendations;
     this.reviews = reviews;
     this.serviceAddresses = serviceAddresses;
@@ -34,10 +43,14 @@ public class ProductAggregate {
     return name;
   }
 
-  public int getWeight() {
+  public Integer getWeight() {
     return weight;
   }
 
+  public RatingSummary getRatings() {
+    return ratings;
+  }
+
   public List<RecommendationSummary> getRecommendations() {
     return recommendations;
   }
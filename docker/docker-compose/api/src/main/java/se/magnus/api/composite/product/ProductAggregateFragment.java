@@ -0,0 +1,80 @@
+package se.magnus.api.composite.product;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import java.util.List;
+
+/**
+ * One part of a composite product, as emitted by the streaming variant of the composite service.
+ * Only the fields that belong to the fragment's type are set, the others are left out of the JSON.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ProductAggregateFragment {
+
+  public enum Type { PRODUCT, RECOMMENDATIONS, REVIEWS }
+
+  private final Type type;
+  private final int productId;
+  private final String name;
+  private final Integer weight;
+  private final List<RecommendationSummary> recommendations;
+  private final List<ReviewSummary> reviews;
+  private final String serviceAddress;
+
+  public ProductAggregateFragment(
+    Type type,
+    int productId,
+    String name,
+    Integer weight,
+    List<RecommendationSummary> recommendations,
+    List<ReviewSummary> reviews,
+    String serviceAddress) {
+
+    this.type = type;
+    this.productId = productId;
+    this.name = name;
+    this.weight = weight;
+    this.recommendations = recommendations;
+    this.reviews = reviews;
+    this.serviceAddress = serviceAddress;
+  }
+
+  public static ProductAggregateFragment product(int productId, String name, int weight, String serviceAddress) {
+    return new ProductAggregateFragment(Type.PRODUCT, productId, name, weight, null, null, serviceAddress);
+  }
+
+  public static ProductAggregateFragment recommendations(int productId, List<RecommendationSummary> recommendations, String serviceAddress) {
+    return new ProductAggregateFragment(Type.RECOMMENDATIONS, productId, null, null, recommendations, null, serviceAddress);
+  }
+
+  public static ProductAggregateFragment reviews(int productId, List<ReviewSummary> reviews, String serviceAddress) {
+    return new ProductAggregateFragment(Type.REVIEWS, productId, null, null, null, reviews, serviceAddress);
+  }
+
+  public Type getType() {
+    return type;
+  }
+
+  public int getProductId() {
+    return productId;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public Integer getWeight() {
+    return weight;
+  }
+
+  public List<RecommendationSummary> getRecommendations() {
+    return recommendations;
+  }
+
+  public List<ReviewSummary> getReviews() {
+    return reviews;
+  }
+
+  public String getServiceAddress() {
+    return serviceAddress;
+  }
+}
@@ -0,0 +1,31 @@
+package se.magnus.api.composite.product;
+
+public class ProductAggregateResult {
+  private final int productId;
+  private final int status;
+  private final String message;
+  private final ProductAggregate product;
+
+  public ProductAggregateResult(int productId, int status, String message, ProductAggregate product) {
+    this.productId = productId;
+    this.status = status;
+    this.message = message;
+    this.product = product;
+  }
+
+  public int getProductId() {
+    return productId;
+  }
+
+  public int getStatus() {
+    return status;
+  }
+
+  public String getMessage() {
+    return message;
+  }
+
+  public ProductAggregate getProduct() {
+    return product;
+  }
+}
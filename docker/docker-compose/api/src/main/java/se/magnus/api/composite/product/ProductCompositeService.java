@@ -1,18 +1,53 @@
 package se.magnus.api.composite.product;
 
+import java.util.List;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestParam;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 public interface ProductCompositeService {
 
   /**
-   * Sample usage: "curl $HOST:$PORT/product-composite/1".
+   * Sample usage: "curl $HOST:$PORT/product-composite/1",
+   * or "curl $HOST:$PORT/product-composite/1?include=product,reviews" for only some of the parts.
    *
    * @param productId Id of the product
+   * @param include the parts to return, any of "product", "ratings", "recommendations", "reviews"
+   *     and "serviceAddresses", all of them if not given. Core services whose part is not requested
+   *     are not called.
    * @return the composite product info, if found, else null
    */
   @GetMapping(
     value = "/product-composite/{productId}",
     produces = "application/json")
-  ProductAggregate getProduct(@PathVariable int productId);
+  Mono<ProductAggregate> getProduct(
+    @PathVariable int productId,
+    @RequestParam(value = "include", required = false) List<String> include);
+
+  /**
+   * Sample usage: "curl -H 'Accept: application/x-ndjson' $HOST:$PORT/product-composite/1/stream".
+   *
+   * @param productId Id of the product
+   * @return the composite product info as fragments, the product first,
+   *     then the recommendations and reviews in the order the core services answer
+   */
+  @GetMapping(
+    value = "/product-composite/{productId}/stream",
+    produces = {"application/x-ndjson", "text/event-stream"})
+  Flux<ProductAggregateFragment> getProductStream(@PathVariable int productId);
+
+  /**
+   * Sample usage: "curl $HOST:$PORT/product-composite?ids=1,2,3".
+   *
+   * @param productIds Ids of the products
+   * @return one result per requested id, in request order, holding either the composite product info
+   *     or the status and message explaining why it could not be produced
+   */
+  @GetMapping(
+    value = "/product-composite",
+    produces = "application/json")
+  Flux<ProductAggregateResult> getProducts(
+    @RequestParam(value = "ids", required = true) List<Integer> productIds);
 }
@@ -0,0 +1,28 @@
+package se.magnus.api.composite.product;
+
+import java.util.Map;
+
+public class RatingSummary {
+
+  private final int count;
+  private final double mean;
+  private final Map<Integer, Integer> histogram;
+
+  public RatingSummary(int count, double mean, Map<Integer, Integer> histogram) {
+    this.count = count;
+    this.mean = mean;
+    this.histogram = histogram;
+  }
+
+  public int getCount() {
+    return count;
+  }
+
+  public double getMean() {
+    return mean;
+  }
+
+  public Map<Integer, Integer> getHistogram() {
+    return histogram;
+  }
+}
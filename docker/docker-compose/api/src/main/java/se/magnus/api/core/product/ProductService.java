@@ -1,7 +1,11 @@
 package se.magnus.api.core.product;
 
+import java.util.List;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestParam;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 public interface ProductService {
 
@@ -13,6 +17,18 @@ public interface ProductService {
    */
   @GetMapping(
     value = "/product/{productId}",
-    produces = "application/json")
-  Product getProduct(@PathVariable int productId);
+    produces = {"application/json", "application/x-jackson-smile"})
+  Mono<Product> getProduct(@PathVariable int productId);
+
+  /**
+   * Sample usage: "curl $HOST:$PORT/product?productIds=1,2,3".
+   *
+   * @param productIds Ids of the products
+   * @return the products that were found, products that do not exist are left out
+   */
+  @GetMapping(
+    value = "/product",
+    produces = {"application/json", "application/x-jackson-smile"})
+  Flux<Product> getProducts(
+    @RequestParam(value = "productIds", required = true) List<Integer> productIds);
 }
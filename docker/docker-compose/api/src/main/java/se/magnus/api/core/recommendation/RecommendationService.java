@@ -1,11 +1,32 @@
 package se.magnus.api.core.recommendation;
 
 import java.util.List;
+import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestParam;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 public interface RecommendationService {
 
+  /**
+   * Sample usage, see below.
+   *
+   * <p>curl -X POST $HOST:$PORT/recommendation \
+   *   -H "Content-Type: application/json" --data \
+   *   '{"productId":123,"recommendationId":456,"author":"me","rate":5,"content":"yada, yada, yada"}'
+   *
+   * @param body A JSON representation of the new recommendation
+   * @return A JSON representation of the newly created recommendation
+   */
+  @PostMapping(
+    value = "/recommendation",
+    consumes = {"application/json", "application/x-jackson-smile"},
+    produces = {"application/json", "application/x-jackson-smile"})
+  Mono<Recommendation> createRecommendation(@RequestBody Recommendation body);
+
   /**
    * Sample usage: "curl $HOST:$PORT/recommendation?productId=1".
    *
@@ -14,7 +35,59 @@ public interface RecommendationService {
    */
   @GetMapping(
     value = "/recommendation",
-    produces = "application/json")
-  List<Recommendation> getRecommendations(
+    produces = {"application/json", "application/x-jackson-smile"})
+  Flux<Recommendation> getRecommendations(
     @RequestParam(value = "productId", required = true) int productId);
+
+  /**
+   * Sample usage: "curl $HOST:$PORT/recommendation?productId=1&limit=5&orderBy=rate".
+   *
+   * @param productId Id of the product
+   * @param limit max number of recommendations to return
+   * @param orderBy "rate" for the highest rates first, ties ordered by recommendationId,
+   *     or "recommendationId", the default
+   * @return the first limit recommendations of the product in the given order
+   */
+  @GetMapping(
+    value = "/recommendation",
+    params = "limit",
+    produces = {"application/json", "application/x-jackson-smile"})
+  Flux<Recommendation> getTopRecommendations(
+    @RequestParam(value = "productId", required = true) int productId,
+    @RequestParam(value = "limit", required = true) int limit,
+    @RequestParam(value = "orderBy", required = false, defaultValue = "recommendationId") String orderBy);
+
+  /**
+   * Sample usage: "curl $HOST:$PORT/recommendation?productIds=1,2,3".
+   *
+   * @param productIds Ids of the products
+   * @return the recommendations of all the products, use the productId of each recommendation to group them
+   */
+  @GetMapping(
+    value = "/recommendation",
+    params = "productIds",
+    produces = {"application/json", "application/x-jackson-smile"})
+  Flux<Recommendation> getRecommendationsForProducts(
+    @RequestParam(value = "productIds", required = true) List<Integer> productIds);
+
+  /**
+   * Sample usage: "curl $HOST:$PORT/recommendation/stats?productId=1".
+   *
+   * @param productId Id of the product
+   * @return count, sum, mean and histogram of the rates of the recommendations of the product
+   */
+  @GetMapping(
+    value = "/recommendation/stats",
+    produces = {"application/json", "application/x-jackson-smile"})
+  Mono<RecommendationStats> getRecommendationStats(
+    @RequestParam(value = "productId", required = true) int productId);
+
+  /**
+   * Sample usage: "curl -X DELETE $HOST:$PORT/recommendation?productId=1".
+   *
+   * @param productId Id of the product
+   * @return A void Mono
+   */
+  @DeleteMapping(value = "/recommendation")
+  Mono<Void> deleteRecommendations(@RequestParam(value = "productId", required = true) int productId);
 }
@@ -0,0 +1,64 @@
+package se.magnus.api.core.recommendation;
+
+import java.util.Map;
+
+public class RecommendationStats {
+  private final int productId;
+  private final int count;
+  private final long sum;
+  private final double mean;
+  private final Map<Integer, Integer> histogram;
+  private final String serviceAddress;
+
+  public RecommendationStats() {
+    productId = 0;
+    count = 0;
+    sum = 0;
+    mean = 0;
+    histogram = null;
+    serviceAddress = null;
+  }
+
+  public RecommendationStats(
+    int productId,
+    int count,
+    long sum,
+    double mean,
+    Map<Integer, Integer> histogram,
+    String serviceAddress) {
+
+    this.productId = productId;
+    this.count = count;
+    this.sum = sum;
+    this.mean = mean;
+    this.histogram = histogram;
+    this.serviceAddress = serviceAddress;
+  }
+
+  public int getProductId() {
+    return productId;
+  }
+
+  public int getCount() {
+    return count;
+  }
+
+  public long getSum() {
+    return sum;
+  }
+
+  public double getMean() {
+    return mean;
+  }
+
+  /**
+   * Number of recommendations per rate, rates without recommendations are left out.
+   */
+  public Map<Integer, Integer> getHistogram() {
+    return histogram;
+  }
+
+  public String getServiceAddress() {
+    return serviceAddress;
+  }
+}
@@ -0,0 +1,29 @@
+package se.magnus.api.core.review;
+
+import java.util.List;
+
+public class ReviewPage {
+  private final List<Review> reviews;
+  private final String nextPageToken;
+
+  public ReviewPage() {
+    reviews = null;
+    nextPageToken = null;
+  }
+
+  public ReviewPage(List<Review> reviews, String nextPageToken) {
+    this.reviews = reviews;
+    this.nextPageToken = nextPageToken;
+  }
+
+  public List<Review> getReviews() {
+    return reviews;
+  }
+
+  /**
+   * Opaque token to pass as pageToken to get the next page, null if this is the last page.
+   */
+  public String getNextPageToken() {
+    return nextPageToken;
+  }
+}
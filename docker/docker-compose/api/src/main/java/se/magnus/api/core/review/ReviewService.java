@@ -1,19 +1,81 @@
 package se.magnus.api.core.review;
 
 import java.util.List;
+import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestParam;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 public interface ReviewService {
 
   /**
-   * Sample usage: "curl $HOST:$PORT/review?productId=1".
+   * Sample usage, see below.
+   *
+   * <p>curl -X POST $HOST:$PORT/review \
+   *   -H "Content-Type: application/json" --data \
+   *   '{"productId":123,"reviewId":456,"author":"me","subject":"yada, yada, yada","content":"yada, yada, yada"}'
+   *
+   * @param body A JSON representation of the new review
+   * @return A JSON representation of the newly created review
+   */
+  @PostMapping(
+    value = "/review",
+    consumes = {"application/json", "application/x-jackson-smile"},
+    produces = {"application/json", "application/x-jackson-smile"})
+  Mono<Review> createReview(@RequestBody Review body);
+
+  /**
+   * Sample usage: "curl $HOST:$PORT/review?productId=1",
+   * or "curl -H 'Accept: application/x-ndjson' $HOST:$PORT/review?productId=1" to stream the reviews
+   * one by one instead of as one JSON array.
    *
    * @param productId Id of the product
    * @return the reviews of the product
    */
   @GetMapping(
     value = "/review",
-    produces = "application/json")
-  List<Review> getReviews(@RequestParam(value = "productId", required = true) int productId);
+    produces = {"application/json", "application/x-ndjson", "application/x-jackson-smile"})
+  Flux<Review> getReviews(@RequestParam(value = "productId", required = true) int productId);
+
+  /**
+   * Sample usage: "curl $HOST:$PORT/review/page?productId=1&pageSize=20",
+   * then "curl $HOST:$PORT/review/page?productId=1&pageSize=20&pageToken=..." with the returned nextPageToken.
+   *
+   * @param productId Id of the product
+   * @param pageSize max number of reviews in the page
+   * @param pageToken nextPageToken of the previous page, none for the first page
+   * @return one page of the reviews of the product, ordered by reviewId
+   */
+  @GetMapping(
+    value = "/review/page",
+    produces = {"application/json", "application/x-jackson-smile"})
+  Mono<ReviewPage> getReviewPage(
+    @RequestParam(value = "productId", required = true) int productId,
+    @RequestParam(value = "pageSize", required = false, defaultValue = "20") int pageSize,
+    @RequestParam(value = "pageToken", required = false) String pageToken);
+
+  /**
+   * Sample usage: "curl $HOST:$PORT/review?productIds=1,2,3".
+   *
+   * @param productIds Ids of the products
+   * @return the reviews of all the products, use the productId of each review to group them
+   */
+  @GetMapping(
+    value = "/review",
+    params = "productIds",
+    produces = {"application/json", "application/x-jackson-smile"})
+  Flux<Review> getReviewsForProducts(
+    @RequestParam(value = "productIds", required = true) List<Integer> productIds);
+
+  /**
+   * Sample usage: "curl -X DELETE $HOST:$PORT/review?productId=1".
+   *
+   * @param productId Id of the product
+   * @return A void Mono
+   */
+  @DeleteMapping(value = "/review")
+  Mono<Void> deleteReviews(@RequestParam(value = "productId", required = true) int productId);
 }
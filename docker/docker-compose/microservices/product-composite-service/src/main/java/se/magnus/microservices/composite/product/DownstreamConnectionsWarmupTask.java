@@ -0,0 +1,67 @@
+package se.magnus.microservices.composite.product;
+
+import java.util.Arrays;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import se.magnus.util.warmup.WarmupProperties;
+import se.magnus.util.warmup.WarmupTask;
+
+/**
+ * Opens connections to each core service before the composite is ready, by calling their health endpoints
+ * concurrently through the shared connection pool; the connections are then kept alive in the pool.
+ * A core service that is not up yet is logged and skipped, its connections are opened on first use.
+ */
+@Component
+class DownstreamConnectionsWarmupTask implements WarmupTask {
+
+  private static final Logger LOG = LoggerFactory.getLogger(DownstreamConnectionsWarmupTask.class);
+
+  private final WebClient webClient;
+  private final WarmupProperties properties;
+  private final String[] serviceUrls;
+
+  @Autowired
+  DownstreamConnectionsWarmupTask(
+    WebClient.Builder webClient,
+    WarmupProperties properties,
+    @Value("${app.product-service.host}") String productServiceHost,
+    @Value("${app.product-service.port}") int productServicePort,
+    @Value("${app.recommendation-service.host}") String recommendationServiceHost,
+    @Value("${app.recommendation-service.port}") int recommendationServicePort,
+    @Value("${app.review-service.host}") String reviewServiceHost,
+    @Value("${app.review-service.port}") int reviewServicePort) {
+
+    this.webClient = webClient.build();
+    this.properties = properties;
+    this.serviceUrls = new String[] {
+      "http://" + productServiceHost + ":" + productServicePort,
+      "http://" + recommendationServiceHost + ":" + recommendationServicePort,
+      "http://" + reviewServiceHost + ":" + reviewServicePort
+    };
+  }
+
+  @Override
+  public String getName() {
+    return "downstream-connections";
+  }
+
+  @Override
+  public Mono<Void> run() {
+    return Flux.fromIterable(Arrays.asList(serviceUrls))
+      .flatMap(url -> Flux.range(0, properties.getConcurrency())
+        .flatMap(i -> webClient.get().uri(url + "/actuator/health").exchangeToMono(ClientResponse::releaseBody))
+        .then()
+        .onErrorResume(e -> {
+          LOG.warn("Could not open connections to {}: {}", url, e.toString());
+          return Mono.empty();
+        }))
+      .then();
+  }
+}
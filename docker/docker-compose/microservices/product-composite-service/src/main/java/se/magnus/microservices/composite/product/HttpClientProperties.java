@@ -0,0 +1,127 @@
+package se.magnus.microservices.composite.product;
+
+import java.time.Duration;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Settings for the pooled HTTP client used to call the core services.
+ *
+ * <p>The connection pool keeps one sub-pool per downstream host, so the connection limits apply to
+ * each host on its own.
+ */
+@Component
+@ConfigurationProperties(prefix = "app.http-client")
+public class HttpClientProperties {
+
+  /**
+   * Max number of connections to one host, active and idle.
+   */
+  private int maxConnections = 50;
+
+  /**
+   * Max number of requests waiting for a connection to one host, before new requests are rejected.
+   */
+  private int pendingAcquireMaxCount = 500;
+
+  /**
+   * Max time a request waits for a connection before it fails.
+   */
+  private Duration pendingAcquireTimeout = Duration.ofSeconds(2);
+
+  /**
+   * Idle connections older than this are closed.
+   */
+  private Duration maxIdleTime = Duration.ofSeconds(30);
+
+  /**
+   * Connections older than this are closed when released, to rebalance after scaling the core services.
+   */
+  private Duration maxLifeTime = Duration.ofMinutes(5);
+
+  /**
+   * How often idle and expired connections are evicted in the background.
+   */
+  private Duration evictionInterval = Duration.ofSeconds(10);
+
+  private Duration connectTimeout = Duration.ofSeconds(1);
+
+  private Duration responseTimeout = Duration.ofSeconds(5);
+
+  /**
+   * Ask the core services for gzip compressed responses, worth it for the review lists with long texts.
+   */
+  private boolean compress = true;
+
+  public int getMaxConnections() {
+    return maxConnections;
+  }
+
+  public void setMaxConnections(int maxConnections) {
+    this.maxConnections = maxConnections;
+  }
+
+  public int getPendingAcquireMaxCount() {
+    return pendingAcquireMaxCount;
+  }
+
+  public void setPendingAcquireMaxCount(int pendingAcquireMaxCount) {
+    this.pendingAcquireMaxCount = pendingAcquireMaxCount;
+  }
+
+  public Duration getPendingAcquireTimeout() {
+    return pendingAcquireTimeout;
+  }
+
+  public void setPendingAcquireTimeout(Duration pendingAcquireTimeout) {
+    this.pendingAcquireTimeout = pendingAcquireTimeout;
+  }
+
+  public Duration getMaxIdleTime() {
+    return maxIdleTime;
+  }
+
+  public void setMaxIdleTime(Duration maxIdleTime) {
+    this.maxIdleTime = maxIdleTime;
+  }
+
+  public Duration getMaxLifeTime() {
+    return maxLifeTime;
+  }
+
+  public void setMaxLifeTime(Duration maxLifeTime) {
+    this.maxLifeTime = maxLifeTime;
+  }
+
+  public Duration getEvictionInterval() {
+    return evictionInterval;
+  }
+
+  public void setEvictionInterval(Duration evictionInterval) {
+    this.evictionInterval = evictionInterval;
+  }
+
+  public Duration getConnectTimeout() {
+    return connectTimeout;
+  }
+
+  public void setConnectTimeout(Duration connectTimeout) {
+    this.connectTimeout = connectTimeout;
+  }
+
+  public Duration getResponseTimeout() {
+    return responseTimeout;
+  }
+
+  public void setResponseTimeout(Duration responseTimeout) {
+    this.responseTimeout = responseTimeout;
+  }
+
+  public boolean isCompress() {
+    return compress;
+  }
+
+  public void setCompress(boolean compress) {
+    this.compress = compress;
+  }
+}
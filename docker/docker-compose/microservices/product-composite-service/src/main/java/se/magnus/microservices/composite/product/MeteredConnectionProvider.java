@@ -0,0 +1,92 @@
+package se.magnus.microservices.composite.product;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.netty.resolver.AddressResolverGroup;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.Map;
+import java.util.function.Supplier;
+import reactor.core.publisher.Mono;
+import reactor.netty.Connection;
+import reactor.netty.ConnectionObserver;
+import reactor.netty.resources.ConnectionProvider;
+import reactor.netty.transport.TransportConfig;
+
+/**
+ * Records how long requests wait to acquire a pooled connection, per remote host.
+ *
+ * <p>The pool's own gauges (active, idle, pending and total connections) are published by Reactor Netty
+ * under "reactor.netty.connection.provider"; the time spent waiting is not, hence this wrapper.
+ */
+class MeteredConnectionProvider implements ConnectionProvider {
+
+  private final ConnectionProvider delegate;
+  private final MeterRegistry registry;
+
+  MeteredConnectionProvider(ConnectionProvider delegate, MeterRegistry registry) {
+    this.delegate = delegate;
+    this.registry = registry;
+  }
+
+  @Override
+  public Mono<? extends Connection> acquire(
+    TransportConfig config,
+    ConnectionObserver connectionObserver,
+    Supplier<? extends SocketAddress> remoteAddress,
+    AddressResolverGroup<?> resolverGroup) {
+
+    return Mono.defer(() -> {
+      Timer.Sample sample = Timer.start(registry);
+      return delegate.acquire(config, connectionObserver, remoteAddress, resolverGroup)
+        .doOnEach(signal -> {
+          if (signal.isOnNext() || signal.isOnError()) {
+            sample.stop(acquireTimer(remoteAddress.get(), signal.isOnNext() ? "success" : "failure"));
+          }
+        });
+    });
+  }
+
+  private Timer acquireTimer(SocketAddress remoteAddress, String outcome) {
+    String remote = remoteAddress instanceof InetSocketAddress
+      ? ((InetSocketAddress) remoteAddress).getHostString() + ":" + ((InetSocketAddress) remoteAddress).getPort()
+      : String.valueOf(remoteAddress);
+
+    return Timer.builder("composite.http.client.connection.acquire")
+      .description("Time spent waiting for a pooled connection to a core service")
+      .tag("remote.address", remote)
+      .tag("outcome", outcome)
+      .publishPercentileHistogram()
+      .register(registry);
+  }
+
+  @Override
+  public void disposeWhen(SocketAddress address) {
+    delegate.disposeWhen(address);
+  }
+
+  @Override
+  public void dispose() {
+    delegate.dispose();
+  }
+
+  @Override
+  public Mono<Void> disposeLater() {
+    return delegate.disposeLater();
+  }
+
+  @Override
+  public boolean isDisposed() {
+    return delegate.isDisposed();
+  }
+
+  @Override
+  public int maxConnections() {
+    return delegate.maxConnections();
+  }
+
+  @Override
+  public Map<SocketAddress, Integer> maxConnectionsPerHost() {
+    return delegate.maxConnectionsPerHost();
+  }
+}
@@ -1,18 +1,48 @@
 package se.magnus.microservices.composite.product;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.netty.channel.ChannelOption;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.ComponentScan;
-import org.springframework.web.client.RestTemplate;
+import org.springframework.http.client.reactive.ClientHttpConnector;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
 
 @SpringBootApplication
 @ComponentScan("se.magnus")
 public class ProductCompositeServiceApplication {
 
+  @Bean(destroyMethod = "dispose")
+  ConnectionProvider connectionProvider(HttpClientProperties properties, MeterRegistry registry) {
+    ConnectionProvider pool = ConnectionProvider.builder("core-services")
+      .maxConnections(properties.getMaxConnections())
+      .pendingAcquireMaxCount(properties.getPendingAcquireMaxCount())
+      .pendingAcquireTimeout(properties.getPendingAcquireTimeout())
+      .maxIdleTime(properties.getMaxIdleTime())
+      .maxLifeTime(properties.getMaxLifeTime())
+      .evictInBackground(properties.getEvictionInterval())
+      .metrics(true)
+      .build();
+
+    return new MeteredConnectionProvider(pool, registry);
+  }
+
+  /**
+   * Picked up by the auto-configured WebClient.Builder, i.e. used for all calls to the core services.
+   */
   @Bean
-  RestTemplate restTemplate() {
-    return new RestTemplate();
+  ClientHttpConnector clientHttpConnector(ConnectionProvider connectionProvider, HttpClientProperties properties) {
+    HttpClient httpClient = HttpClient.create(connectionProvider)
+      .keepAlive(true)
+      .option(ChannelOption.SO_KEEPALIVE, true)
+      .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) properties.getConnectTimeout().toMillis())
+      .responseTimeout(properties.getResponseTimeout())
+      .compress(properties.isCompress());
+
+    return new ReactorClientHttpConnector(httpClient);
   }
 
   public static void main(String[] args) {
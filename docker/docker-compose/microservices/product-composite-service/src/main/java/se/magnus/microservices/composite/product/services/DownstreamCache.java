@@ -0,0 +1,171 @@
+package se.magnus.microservices.composite.product.services;
+
+import com.github.benmanes.caffeine.cache.AsyncCacheLoader;
+import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+import reactor.core.publisher.Mono;
+import reactor.util.context.Context;
+import reactor.util.context.ContextView;
+import se.magnus.util.http.Deadline;
+
+/**
+ * Bounded read-through cache of the responses from one core service, keyed by productId.
+ *
+ * <p>Eviction is frequency aware (Caffeine's W-TinyLFU), so a burst of one-off products does not
+ * flush out the popular ones. Entries older than the ttl are served stale while they are refreshed in
+ * the background; only entries that were not read during their max-stale period, or that were never
+ * loaded, cause a downstream call on the request path.
+ *
+ * <p>Each entry keeps the ETag of the response it was loaded from, and refreshes pass the entry to the
+ * loader, so it can revalidate it with a conditional request; a core service answering 304 Not Modified
+ * does not need to send, nor the composite to decode, the response again. Entries loaded by a bulk call
+ * have no ETag, their first refresh loads them in full.
+ *
+ * <p>Concurrent lookups of a product that is not cached share one load, Caffeine keeps the pending load
+ * as the entry. The loads started and the lookups that attached to one in flight are counted as
+ * composite.cache.loads, tagged outcome=executed|coalesced.
+ *
+ * <p>Missing products and errors are not cached.
+ */
+class DownstreamCache<V> {
+
+  private final AsyncLoadingCache<Integer, Validated<V>> cache;
+
+  private final BiFunction<Integer, Validated<V>, Mono<Validated<V>>> loader;
+  private final Function<Set<Integer>, Mono<Map<Integer, V>>> bulkLoader;
+
+  private final Counter executed;
+  private final Counter coalesced;
+
+  DownstreamCache(
+    String service,
+    DownstreamCacheProperties.Spec spec,
+    BiFunction<Integer, Validated<V>, Mono<Validated<V>>> loader,
+    Function<Set<Integer>, Mono<Map<Integer, V>>> bulkLoader,
+    MeterRegistry registry) {
+
+    this.loader = loader;
+    this.bulkLoader = bulkLoader;
+
+    AsyncLoadingCache<Integer, Validated<V>> cache = Caffeine.newBuilder()
+      .maximumSize(spec.getMaxSize())
+      .refreshAfterWrite(spec.getTtl())
+      .expireAfterWrite(spec.getMaxStale())
+      .recordStats()
+      .buildAsync(new AsyncCacheLoader<Integer, Validated<V>>() {
+
+        @Override
+        public CompletableFuture<Validated<V>> asyncLoad(Integer productId, Executor executor) {
+          return loader.apply(productId, null).toFuture();
+        }
+
+        @Override
+        public CompletableFuture<Map<Integer, Validated<V>>> asyncLoadAll(Iterable<? extends Integer> productIds, Executor executor) {
+          return loadAll(productIds).toFuture();
+        }
+
+        @Override
+        public CompletableFuture<Validated<V>> asyncReload(Integer productId, Validated<V> oldValue, Executor executor) {
+          return loader.apply(productId, oldValue).toFuture();
+        }
+      });
+
+    this.cache = CaffeineCacheMetrics.monitor(registry, cache, service);
+
+    executed = Counter.builder("composite.cache.loads")
+      .description("Lookups of products that were not cached, by whether they started a load or attached to one in flight")
+      .tag("cache", service)
+      .tag("outcome", "executed")
+      .register(registry);
+    coalesced = Counter.builder("composite.cache.loads")
+      .description("Lookups of products that were not cached, by whether they started a load or attached to one in flight")
+      .tag("cache", service)
+      .tag("outcome", "coalesced")
+      .register(registry);
+  }
+
+  /**
+   * A load triggered by the lookup runs with the Reactor context of the caller, but without its deadline,
+   * as concurrent lookups of the product wait for the same load; like background refreshes, it is bounded
+   * by the response timeout of the WebClient. Each caller waits for the load until its own deadline.
+   */
+  Mono<V> get(int productId) {
+    return getValidated(productId).map(Validated::getValue);
+  }
+
+  Mono<Validated<V>> getValidated(int productId) {
+    return Mono.deferContextual(context -> {
+      // Read through the map view, which does not count as a hit or miss in the cache stats
+      CompletableFuture<Validated<V>> pending = cache.asMap().get(productId);
+      if (pending != null && !pending.isDone()) {
+        coalesced.increment();
+      }
+      return withDeadlineOf(context, () -> Mono.fromFuture(cache.get(productId, (id, executor) -> {
+        executed.increment();
+        return loader.apply(id, null).contextWrite(sharedContext(context)).toFuture();
+      })));
+    });
+  }
+
+  /**
+   * Products that are not cached are loaded with one bulk call, products unknown to the core service
+   * are left out of the returned map.
+   */
+  Mono<Map<Integer, V>> getAll(Collection<Integer> productIds) {
+    return Mono.deferContextual(context -> withDeadlineOf(context, () -> Mono.fromFuture(
+        cache.getAll(productIds, (ids, executor) -> loadAll(ids).contextWrite(sharedContext(context)).toFuture()))))
+      .map(validated -> validated.entrySet().stream()
+        .collect(Collectors.toMap(Map.Entry::getKey, entry -> entry.getValue().getValue())));
+  }
+
+  /**
+   * Drops the cached response of a product, e.g. after its data was changed through the composite.
+   */
+  void invalidate(int productId) {
+    cache.synchronous().invalidate(productId);
+  }
+
+  private static Context sharedContext(ContextView caller) {
+    return Context.of(caller).delete(Deadline.class);
+  }
+
+  private static <T> Mono<T> withDeadlineOf(ContextView caller, Supplier<Mono<T>> lookup) {
+    Optional<Deadline> deadline = caller.getOrEmpty(Deadline.class);
+    if (!deadline.isPresent()) {
+      return lookup.get();
+    }
+
+    Duration remaining = deadline.get().remaining();
+    if (remaining.isNegative() || remaining.isZero()) {
+      return Mono.error(new TimeoutException("Deadline exceeded, did not look up the cache"));
+    }
+    return lookup.get()
+      .timeout(remaining, Mono.error(() -> new TimeoutException("Deadline exceeded while waiting for a cache load")));
+  }
+
+  private Mono<Map<Integer, Validated<V>>> loadAll(Iterable<? extends Integer> productIds) {
+    return bulkLoader.apply(toSet(productIds))
+      .map(values -> values.entrySet().stream()
+        .collect(Collectors.toMap(Map.Entry::getKey, entry -> Validated.unversioned(entry.getValue()))));
+  }
+
+  private static Set<Integer> toSet(Iterable<? extends Integer> productIds) {
+    return StreamSupport.stream(productIds.spliterator(), false).collect(Collectors.toSet());
+  }
+}
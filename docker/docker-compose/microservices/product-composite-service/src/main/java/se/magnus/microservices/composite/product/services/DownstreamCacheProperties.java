@@ -0,0 +1,85 @@
+package se.magnus.microservices.composite.product.services;
+
+import java.time.Duration;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Settings for the read-through caches in front of the core services, one {@link Spec} per service.
+ */
+@Component
+@ConfigurationProperties(prefix = "app.cache")
+public class DownstreamCacheProperties {
+
+  private Spec product = new Spec();
+  private Spec recommendation = new Spec();
+  private Spec review = new Spec();
+
+  public Spec getProduct() {
+    return product;
+  }
+
+  public void setProduct(Spec product) {
+    this.product = product;
+  }
+
+  public Spec getRecommendation() {
+    return recommendation;
+  }
+
+  public void setRecommendation(Spec recommendation) {
+    this.recommendation = recommendation;
+  }
+
+  public Spec getReview() {
+    return review;
+  }
+
+  public void setReview(Spec review) {
+    this.review = review;
+  }
+
+  public static class Spec {
+
+    /**
+     * Max number of products to keep entries for.
+     */
+    private long maxSize = 10_000;
+
+    /**
+     * Age after which an entry is considered stale. A stale entry is still served, but the first read
+     * of it triggers a refresh in the background.
+     */
+    private Duration ttl = Duration.ofSeconds(30);
+
+    /**
+     * Age after which an entry is dropped, i.e. how long a stale entry may be served if it is not read
+     * often enough to get refreshed, or if the refreshes fail.
+     */
+    private Duration maxStale = Duration.ofMinutes(10);
+
+    public long getMaxSize() {
+      return maxSize;
+    }
+
+    public void setMaxSize(long maxSize) {
+      this.maxSize = maxSize;
+    }
+
+    public Duration getTtl() {
+      return ttl;
+    }
+
+    public void setTtl(Duration ttl) {
+      this.ttl = ttl;
+    }
+
+    public Duration getMaxStale() {
+      return maxStale;
+    }
+
+    public void setMaxStale(Duration maxStale) {
+      this.maxStale = maxStale;
+    }
+  }
+}
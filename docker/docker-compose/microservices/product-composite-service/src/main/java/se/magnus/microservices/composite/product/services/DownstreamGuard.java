@@ -0,0 +1,67 @@
+package se.magnus.microservices.composite.product.services;
+
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.reactor.bulkhead.operator.BulkheadOperator;
+import io.github.resilience4j.reactor.circuitbreaker.operator.CircuitBreakerOperator;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.publisher.Mono;
+
+/**
+ * Circuit breaker and concurrency bulkhead in front of one core service.
+ *
+ * <p>While the circuit is open, or all bulkhead permits are taken, calls fail right away without
+ * touching the network. The breakers and bulkheads are configured per core service name under
+ * "resilience4j.circuitbreaker" and "resilience4j.bulkhead".
+ */
+class DownstreamGuard {
+
+  private static final Logger LOG = LoggerFactory.getLogger(DownstreamGuard.class);
+
+  private final CircuitBreaker circuitBreaker;
+  private final Bulkhead bulkhead;
+
+  private final Counter circuitOpenRejections;
+  private final Counter bulkheadFullRejections;
+
+  DownstreamGuard(
+    String service,
+    CircuitBreakerRegistry circuitBreakerRegistry,
+    BulkheadRegistry bulkheadRegistry,
+    MeterRegistry registry) {
+
+    circuitBreaker = circuitBreakerRegistry.circuitBreaker(service);
+    bulkhead = bulkheadRegistry.bulkhead(service);
+
+    circuitBreaker.getEventPublisher().onStateTransition(event ->
+      LOG.info("Circuit breaker for {} changed state: {}", service, event.getStateTransition()));
+
+    circuitOpenRejections = rejectionCounter(service, "circuit-open", registry);
+    bulkheadFullRejections = rejectionCounter(service, "bulkhead-full", registry);
+  }
+
+  private static Counter rejectionCounter(String service, String reason, MeterRegistry registry) {
+    return Counter.builder("composite.downstream.rejected")
+      .description("Calls to a core service that failed fast without being sent")
+      .tag("service", service)
+      .tag("reason", reason)
+      .register(registry);
+  }
+
+  <T> Mono<T> protect(Mono<T> call) {
+    // The circuit breaker is applied last, i.e. it is checked first and an
+    // open circuit does not take a bulkhead permit
+    return call
+      .transformDeferred(BulkheadOperator.of(bulkhead))
+      .transformDeferred(CircuitBreakerOperator.of(circuitBreaker))
+      .doOnError(CallNotPermittedException.class, ex -> circuitOpenRejections.increment())
+      .doOnError(BulkheadFullException.class, ex -> bulkheadFullRejections.increment());
+  }
+}
@@ -0,0 +1,117 @@
+package se.magnus.microservices.composite.product.services;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Settings for hedged requests to the core services, see {@link RequestHedger}.
+ */
+@Component
+@ConfigurationProperties(prefix = "app.hedging")
+public class HedgingProperties {
+
+  private boolean enabled = false;
+
+  /**
+   * The latency percentile of a core service after which a hedge is sent.
+   */
+  private double percentile = 0.95;
+
+  /**
+   * Hedge delay used until enough responses have been observed to compute the percentile.
+   */
+  private Duration initialDelay = Duration.ofMillis(100);
+
+  private Duration minDelay = Duration.ofMillis(10);
+
+  private Duration maxDelay = Duration.ofSeconds(1);
+
+  /**
+   * Max number of hedges, as a fraction of the number of requests.
+   */
+  private double budgetRatio = 0.05;
+
+  /**
+   * Number of hedges that may be sent in a burst before the budget ratio kicks in.
+   */
+  private int budgetBurst = 10;
+
+  /**
+   * Additional instances, as host:port, to send hedges to, by core service name (product,
+   * recommendation or review). Hedges go to the primary host when none are configured.
+   */
+  private Map<String, List<String>> alternateHosts = new HashMap<>();
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  public void setEnabled(boolean enabled) {
+    this.enabled = enabled;
+  }
+
+  public double getPercentile() {
+    return percentile;
+  }
+
+  public void setPercentile(double percentile) {
+    this.percentile = percentile;
+  }
+
+  public Duration getInitialDelay() {
+    return initialDelay;
+  }
+
+  public void setInitialDelay(Duration initialDelay) {
+    this.initialDelay = initialDelay;
+  }
+
+  public Duration getMinDelay() {
+    return minDelay;
+  }
+
+  public void setMinDelay(Duration minDelay) {
+    this.minDelay = minDelay;
+  }
+
+  public Duration getMaxDelay() {
+    return maxDelay;
+  }
+
+  public void setMaxDelay(Duration maxDelay) {
+    this.maxDelay = maxDelay;
+  }
+
+  public double getBudgetRatio() {
+    return budgetRatio;
+  }
+
+  public void setBudgetRatio(double budgetRatio) {
+    this.budgetRatio = budgetRatio;
+  }
+
+  public int getBudgetBurst() {
+    return budgetBurst;
+  }
+
+  public void setBudgetBurst(int budgetBurst) {
+    this.budgetBurst = budgetBurst;
+  }
+
+  public Map<String, List<String>> getAlternateHosts() {
+    return alternateHosts;
+  }
+
+  public void setAlternateHosts(Map<String, List<String>> alternateHosts) {
+    this.alternateHosts = alternateHosts;
+  }
+
+  List<String> alternateHostsOf(String service) {
+    return alternateHosts.getOrDefault(service, new ArrayList<>());
+  }
+}
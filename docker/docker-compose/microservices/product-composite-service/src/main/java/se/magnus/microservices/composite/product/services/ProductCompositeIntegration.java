@@ -1,131 +1,564 @@
 package se.magnus.microservices.composite.product.services;
 
-import static org.springframework.http.HttpMethod.GET;
-
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.micrometer.core.instrument.MeterRegistry;
 import java.io.IOException;
+import java.util.AbstractMap.SimpleEntry;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Component;
-import org.springframework.web.client.HttpClientErrorException;
-import org.springframework.web.client.RestTemplate;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 import se.magnus.api.core.product.Product;
 import se.magnus.api.core.product.ProductService;
 import se.magnus.api.core.recommendation.Recommendation;
 import se.magnus.api.core.recommendation.RecommendationService;
+import se.magnus.api.core.recommendation.RecommendationStats;
 import se.magnus.api.core.review.Review;
+import se.magnus.api.core.review.ReviewPage;
 import se.magnus.api.core.review.ReviewService;
 import se.magnus.api.exceptions.InvalidInputException;
 import se.magnus.api.exceptions.NotFoundException;
 import se.magnus.util.http.HttpErrorInfo;
 
+/**
+ * Non-blocking client for the core services.
+ *
+ * <p>All calls are executed on the shared WebClient event loop; nothing is subscribed here, so it is
+ * up to the caller to decide which calls run concurrently. Responses are cached per core service, see
+ * {@link DownstreamCache}, which also coalesces concurrent cache misses for the same product and core
+ * service into one downstream request. Slow single product requests may be hedged, see
+ * {@link RequestHedger}, and each core service is protected by a circuit breaker and a bulkhead, see
+ * {@link DownstreamGuard}; a failing core service makes the calls to it fail fast, which for
+ * recommendations and reviews means an empty result.
+ *
+ * <p>Cached responses are revalidated with conditional requests, see {@link DownstreamCache}, and the
+ * getValidated methods return them with their ETags, so that the composite can version what it builds
+ * from them.
+ */
 @Component
 public class ProductCompositeIntegration implements ProductService, RecommendationService, ReviewService {
 
   private static final Logger LOG = LoggerFactory.getLogger(ProductCompositeIntegration.class);
 
-  private final RestTemplate restTemplate;
+  private final WebClient webClient;
+  private final MediaType serviceMediaType;
   private final ObjectMapper mapper;
+  private final MeterRegistry registry;
 
   private final String productServiceUrl;
   private final String recommendationServiceUrl;
   private final String reviewServiceUrl;
 
+  private final int recommendationLimit;
+  private final int reviewPageSize;
+
+  private final RequestHedger productHedger;
+  private final RequestHedger recommendationHedger;
+  private final RequestHedger reviewHedger;
+
+  private final DownstreamGuard productGuard;
+  private final DownstreamGuard recommendationGuard;
+  private final DownstreamGuard reviewGuard;
+
+  private final DownstreamCache<Product> productCache;
+  private final DownstreamCache<List<Recommendation>> recommendationCache;
+  private final DownstreamCache<List<Review>> reviewCache;
+  private final DownstreamCache<RecommendationStats> recommendationStatsCache;
+
+  // The batch endpoint computes the ratings from all the recommendations of a product, so they are kept
+  // apart from the top rated ones the single product aggregate shows
+  private final DownstreamCache<List<Recommendation>> allRecommendationsCache;
+
+  // Likewise, the batch endpoint returns all the reviews of a product, the single product aggregate only the first page
+  private final DownstreamCache<List<Review>> allReviewsCache;
+
   @Autowired
   public ProductCompositeIntegration(
-    RestTemplate restTemplate,
+    WebClient.Builder webClient,
     ObjectMapper mapper,
+    MeterRegistry registry,
+    DownstreamCacheProperties cacheProperties,
+    HedgingProperties hedgingProperties,
+    CircuitBreakerRegistry circuitBreakerRegistry,
+    BulkheadRegistry bulkheadRegistry,
     @Value("${app.product-service.host}") String productServiceHost,
     @Value("${app.product-service.port}") int productServicePort,
     @Value("${app.recommendation-service.host}") String recommendationServiceHost,
     @Value("${app.recommendation-service.port}") int recommendationServicePort,
+    @Value("${app.recommendation-service.limit}") int recommendationLimit,
     @Value("${app.review-service.host}") String reviewServiceHost,
-    @Value("${app.review-service.port}") int reviewServicePort) {
+    @Value("${app.review-service.port}") int reviewServicePort,
+    @Value("${app.review-service.page-size}") int reviewPageSize,
+    @Value("${app.service-media-type}") MediaType serviceMediaType) {
 
-    this.restTemplate = restTemplate;
+    this.webClient = webClient.defaultHeaders(headers -> headers.setAccept(acceptOf(serviceMediaType))).build();
+    this.serviceMediaType = serviceMediaType;
     this.mapper = mapper;
+    this.registry = registry;
+
+    productServiceUrl = "http://" + productServiceHost + ":" + productServicePort;
+    recommendationServiceUrl = "http://" + recommendationServiceHost + ":" + recommendationServicePort;
+    reviewServiceUrl = "http://" + reviewServiceHost + ":" + reviewServicePort;
 
-    productServiceUrl = "http://" + productServiceHost + ":" + productServicePort + "/product/";
-    recommendationServiceUrl = "http://" + recommendationServiceHost + ":" + recommendationServicePort + "/recommendation?productId=";
-    reviewServiceUrl = "http://" + reviewServiceHost + ":" + reviewServicePort + "/review?productId=";
+    this.recommendationLimit = recommendationLimit;
+    this.reviewPageSize = reviewPageSize;
+
+    productHedger = new RequestHedger("product",
+      baseUrls(productServiceUrl, hedgingProperties.alternateHostsOf("product")), hedgingProperties, registry);
+    recommendationHedger = new RequestHedger("recommendation",
+      baseUrls(recommendationServiceUrl, hedgingProperties.alternateHostsOf("recommendation")), hedgingProperties, registry);
+    reviewHedger = new RequestHedger("review",
+      baseUrls(reviewServiceUrl, hedgingProperties.alternateHostsOf("review")), hedgingProperties, registry);
+
+    productGuard = new DownstreamGuard("product", circuitBreakerRegistry, bulkheadRegistry, registry);
+    recommendationGuard = new DownstreamGuard("recommendation", circuitBreakerRegistry, bulkheadRegistry, registry);
+    reviewGuard = new DownstreamGuard("review", circuitBreakerRegistry, bulkheadRegistry, registry);
+
+    productCache = new DownstreamCache<>("product", cacheProperties.getProduct(),
+      (productId, cached) -> productHedger.execute(baseUrl -> productGuard.protect(requestProduct(baseUrl, productId, cached))),
+      productIds -> productGuard.protect(requestProducts(productIds)), registry);
+    recommendationCache = new DownstreamCache<>("recommendation", cacheProperties.getRecommendation(),
+      (productId, cached) -> recommendationHedger.execute(baseUrl -> recommendationGuard.protect(requestRecommendations(baseUrl, productId, cached))),
+      productIds -> Flux.fromIterable(productIds)
+        .flatMap(productId -> recommendationGuard.protect(requestRecommendations(recommendationServiceUrl, productId, null))
+          .map(recommendations -> new SimpleEntry<>(productId, recommendations.getValue())))
+        .collectMap(Map.Entry::getKey, Map.Entry::getValue), registry);
+    reviewCache = new DownstreamCache<>("review", cacheProperties.getReview(),
+      (productId, cached) -> reviewHedger.execute(baseUrl -> reviewGuard.protect(requestReviews(baseUrl, productId, cached))),
+      productIds -> Flux.fromIterable(productIds)
+        .flatMap(productId -> reviewGuard.protect(requestReviews(reviewServiceUrl, productId, null))
+          .map(reviews -> new SimpleEntry<>(productId, reviews.getValue())))
+        .collectMap(Map.Entry::getKey, Map.Entry::getValue), registry);
+    recommendationStatsCache = new DownstreamCache<>("recommendation-stats", cacheProperties.getRecommendation(),
+      (productId, cached) -> recommendationGuard.protect(requestRecommendationStats(productId, cached)),
+      productIds -> Flux.fromIterable(productIds)
+        .flatMap(productId -> recommendationGuard.protect(requestRecommendationStats(productId, null)))
+        .map(Validated::getValue)
+        .collectMap(RecommendationStats::getProductId), registry);
+    allRecommendationsCache = new DownstreamCache<>("recommendation-all", cacheProperties.getRecommendation(),
+      (productId, cached) -> recommendationGuard.protect(requestAllRecommendations(productId, cached)),
+      productIds -> recommendationGuard.protect(requestRecommendationsForProducts(productIds)), registry);
+    allReviewsCache = new DownstreamCache<>("review-all", cacheProperties.getReview(),
+      (productId, cached) -> reviewGuard.protect(requestAllReviews(productId, cached)),
+      productIds -> reviewGuard.protect(requestReviewsForProducts(productIds)), registry);
+  }
+
+  private static List<String> baseUrls(String primaryUrl, List<String> alternateHosts) {
+    List<String> baseUrls = new ArrayList<>();
+    baseUrls.add(primaryUrl);
+    alternateHosts.forEach(host -> baseUrls.add("http://" + host));
+    return baseUrls;
   }
 
-  public Product getProduct(int productId) {
+  @Override
+  public Mono<Product> getProduct(int productId) {
+    return productCache.get(productId);
+  }
 
-    try {
-      String url = productServiceUrl + productId;
-      LOG.debug("Will call getProduct API on URL: {}", url);
+  public Mono<Validated<Product>> getValidatedProduct(int productId) {
+    return productCache.getValidated(productId);
+  }
+
+  @Override
+  public Flux<Recommendation> getRecommendations(int productId) {
+    return getValidatedRecommendations(productId).flatMapIterable(Validated::getValue);
+  }
+
+  public Mono<Validated<List<Recommendation>>> getValidatedRecommendations(int productId) {
+
+    // Return an empty result if something goes wrong to make it possible
+    // for the composite service to return partial responses
+    return recommendationCache.getValidated(productId)
+      .onErrorResume(ex -> {
+        LOG.warn("Got an exception while requesting recommendations, return zero recommendations: {}", ex.getMessage());
+        return Mono.just(Validated.unversioned(Collections.emptyList()));
+      });
+  }
+
+  /**
+   * Not cached, only the top rated recommendations of a product are, as returned by {@link #getRecommendations(int)}.
+   */
+  @Override
+  public Flux<Recommendation> getTopRecommendations(int productId, int limit, String orderBy) {
+    return recommendationGuard.protect(requestTopRecommendations(recommendationServiceUrl, productId, limit, orderBy))
+      .flatMapIterable(recommendations -> recommendations);
+  }
+
+  @Override
+  public Mono<RecommendationStats> getRecommendationStats(int productId) {
+    return getValidatedRecommendationStats(productId).map(Validated::getValue);
+  }
+
+  public Mono<Validated<RecommendationStats>> getValidatedRecommendationStats(int productId) {
+
+    return recommendationStatsCache.getValidated(productId)
+      .onErrorResume(ex -> {
+        LOG.warn("Got an exception while requesting recommendation stats, return no stats: {}", ex.getMessage());
+        return Mono.empty();
+      });
+  }
+
+  @Override
+  public Mono<Recommendation> createRecommendation(Recommendation body) {
+
+    String url = recommendationServiceUrl + "/recommendation";
+    LOG.debug("Will post a new recommendation to URL: {}", url);
+
+    return recommendationGuard.protect(webClient.post().uri(url).contentType(serviceMediaType).bodyValue(body).retrieve()
+        .bodyToMono(Recommendation.class)
+        .onErrorMap(WebClientResponseException.class, this::handleException))
+      .doOnSuccess(recommendation -> invalidateRecommendations(body.getProductId()));
+  }
+
+  @Override
+  public Mono<Void> deleteRecommendations(int productId) {
+
+    String url = recommendationServiceUrl + "/recommendation?productId=" + productId;
+    LOG.debug("Will call the deleteRecommendations API on URL: {}", url);
+
+    return recommendationGuard.protect(webClient.delete().uri(url).retrieve()
+        .bodyToMono(Void.class)
+        .onErrorMap(WebClientResponseException.class, this::handleException))
+      .doOnSuccess(v -> invalidateRecommendations(productId));
+  }
+
+  private void invalidateRecommendations(int productId) {
+    recommendationCache.invalidate(productId);
+    recommendationStatsCache.invalidate(productId);
+    allRecommendationsCache.invalidate(productId);
+  }
+
+  @Override
+  public Flux<Review> getReviews(int productId) {
+    return getValidatedReviews(productId).flatMapIterable(Validated::getValue);
+  }
+
+  public Mono<Validated<List<Review>>> getValidatedReviews(int productId) {
+
+    return reviewCache.getValidated(productId)
+      .onErrorResume(ex -> {
+        LOG.warn("Got an exception while requesting reviews, return zero reviews: {}", ex.getMessage());
+        return Mono.just(Validated.unversioned(Collections.emptyList()));
+      });
+  }
 
-      Product product = restTemplate.getForObject(url, Product.class);
-      LOG.debug("Found a product with id: {}", product.getProductId());
+  @Override
+  public Mono<Review> createReview(Review body) {
 
-      return product;
+    String url = reviewServiceUrl + "/review";
+    LOG.debug("Will post a new review to URL: {}", url);
 
-    } catch (HttpClientErrorException ex) {
+    return reviewGuard.protect(webClient.post().uri(url).contentType(serviceMediaType).bodyValue(body).retrieve()
+        .bodyToMono(Review.class)
+        .onErrorMap(WebClientResponseException.class, this::handleException))
+      .doOnSuccess(review -> invalidateReviews(body.getProductId()));
+  }
+
+  @Override
+  public Mono<Void> deleteReviews(int productId) {
 
-      switch (ex.getStatusCode()) {
-        case NOT_FOUND:
-          throw new NotFoundException(getErrorMessage(ex));
+    String url = reviewServiceUrl + "/review?productId=" + productId;
+    LOG.debug("Will call the deleteReviews API on URL: {}", url);
 
-        case UNPROCESSABLE_ENTITY:
-          throw new InvalidInputException(getErrorMessage(ex));
+    return reviewGuard.protect(webClient.delete().uri(url).retrieve()
+        .bodyToMono(Void.class)
+        .onErrorMap(WebClientResponseException.class, this::handleException))
+      .doOnSuccess(v -> invalidateReviews(productId));
+  }
 
-        default:
-          LOG.warn("Got an unexpected HTTP error: {}, will rethrow it", ex.getStatusCode());
-          LOG.warn("Error body: {}", ex.getResponseBodyAsString());
-          throw ex;
-      }
+  private void invalidateReviews(int productId) {
+    reviewCache.invalidate(productId);
+    allReviewsCache.invalidate(productId);
+  }
+
+  /**
+   * Not cached, only the first page of the reviews of a product is, as returned by {@link #getReviews(int)}.
+   */
+  @Override
+  public Mono<ReviewPage> getReviewPage(int productId, int pageSize, String pageToken) {
+    return reviewGuard.protect(requestReviewPage(reviewServiceUrl, productId, pageSize, pageToken));
+  }
+
+  @Override
+  public Flux<Product> getProducts(List<Integer> productIds) {
+
+    if (productIds.isEmpty()) {
+      return Flux.empty();
     }
+
+    return productCache.getAll(productIds)
+      .flatMapIterable(Map::values);
   }
 
-  private String getErrorMessage(HttpClientErrorException ex) {
-    try {
-      return mapper.readValue(ex.getResponseBodyAsString(), HttpErrorInfo.class).getMessage();
-    } catch (IOException ioex) {
-      return ex.getMessage();
+  /**
+   * All the recommendations of each product, not only the top rated ones {@link #getRecommendations(int)} returns.
+   */
+  @Override
+  public Flux<Recommendation> getRecommendationsForProducts(List<Integer> productIds) {
+
+    if (productIds.isEmpty()) {
+      return Flux.empty();
     }
+
+    return allRecommendationsCache.getAll(productIds)
+      .flatMapIterable(Map::values)
+      .flatMapIterable(recommendations -> recommendations)
+      .onErrorResume(ex -> {
+        LOG.warn("Got an exception while requesting recommendations, return zero recommendations: {}", ex.getMessage());
+        return Flux.empty();
+      });
   }
 
-  public List<Recommendation> getRecommendations(int productId) {
+  /**
+   * All the reviews of each product, not only the first page {@link #getReviews(int)} returns.
+   */
+  @Override
+  public Flux<Review> getReviewsForProducts(List<Integer> productIds) {
 
-    try {
-      String url = recommendationServiceUrl + productId;
+    if (productIds.isEmpty()) {
+      return Flux.empty();
+    }
+
+    return allReviewsCache.getAll(productIds)
+      .flatMapIterable(Map::values)
+      .flatMapIterable(reviews -> reviews)
+      .onErrorResume(ex -> {
+        LOG.warn("Got an exception while requesting reviews, return zero reviews: {}", ex.getMessage());
+        return Flux.empty();
+      });
+  }
 
-      LOG.debug("Will call getRecommendations API on URL: {}", url);
-      List<Recommendation> recommendations = restTemplate
-        .exchange(url, GET, null, new ParameterizedTypeReference<List<Recommendation>>() {})
-        .getBody();
+  private Mono<Validated<Product>> requestProduct(String baseUrl, int productId, Validated<Product> cached) {
 
-      LOG.debug("Found {} recommendations for a product with id: {}", recommendations.size(), productId);
-      return recommendations;
+    String url = baseUrl + "/product/" + productId;
+    LOG.debug("Will call getProduct API on URL: {}", url);
 
-    } catch (Exception ex) {
-      LOG.warn("Got an exception while requesting recommendations, return zero recommendations: {}", ex.getMessage());
-      return new ArrayList<>();
+    return requestValidated("product", url, cached, response -> response.toEntity(Product.class))
+      .doOnNext(product -> LOG.debug("Found a product with id: {}", product.getValue().getProductId()));
+  }
+
+  /**
+   * Only the top rated ones, that is all the aggregate shows, so its size does not grow with the number
+   * of recommendations of the product.
+   */
+  private Mono<Validated<List<Recommendation>>> requestRecommendations(String baseUrl, int productId, Validated<List<Recommendation>> cached) {
+
+    String url = topRecommendationsUrl(baseUrl, productId, recommendationLimit, "rate");
+    LOG.debug("Will call getTopRecommendations API on URL: {}", url);
+
+    return requestValidated("recommendation", url, cached, response -> response.toEntityList(Recommendation.class))
+      .doOnNext(recommendations -> LOG.debug("Found {} recommendations for a product with id: {}", recommendations.getValue().size(), productId));
+  }
+
+  private Mono<Validated<List<Recommendation>>> requestAllRecommendations(int productId, Validated<List<Recommendation>> cached) {
+
+    String url = recommendationServiceUrl + "/recommendation?productId=" + productId;
+    LOG.debug("Will call getRecommendations API on URL: {}", url);
+
+    return requestValidated("recommendation-all", url, cached, response -> response.toEntityList(Recommendation.class));
+  }
+
+  private Mono<List<Recommendation>> requestTopRecommendations(String baseUrl, int productId, int limit, String orderBy) {
+
+    String url = topRecommendationsUrl(baseUrl, productId, limit, orderBy);
+    LOG.debug("Will call getTopRecommendations API on URL: {}", url);
+
+    return webClient.get().uri(url).retrieve()
+      .bodyToFlux(Recommendation.class)
+      .onErrorMap(WebClientResponseException.class, this::handleException)
+      .collectList()
+      .doOnNext(recommendations -> LOG.debug("Found {} recommendations for a product with id: {}", recommendations.size(), productId));
+  }
+
+  private String topRecommendationsUrl(String baseUrl, int productId, int limit, String orderBy) {
+    return UriComponentsBuilder.fromHttpUrl(baseUrl + "/recommendation")
+      .queryParam("productId", productId)
+      .queryParam("limit", limit)
+      .queryParam("orderBy", orderBy)
+      .toUriString();
+  }
+
+  private Mono<Validated<RecommendationStats>> requestRecommendationStats(int productId, Validated<RecommendationStats> cached) {
+
+    String url = recommendationServiceUrl + "/recommendation/stats?productId=" + productId;
+    LOG.debug("Will call getRecommendationStats API on URL: {}", url);
+
+    return requestValidated("recommendation-stats", url, cached, response -> response.toEntity(RecommendationStats.class));
+  }
+
+  private Mono<Validated<List<Review>>> requestReviews(String baseUrl, int productId, Validated<List<Review>> cached) {
+
+    String url = reviewPageUrl(baseUrl, productId, reviewPageSize, null);
+    LOG.debug("Will call getReviewPage API on URL: {}", url);
+
+    Validated<ReviewPage> cachedPage = (cached == null) ? null : new Validated<>(null, cached.getEtag());
+    return requestValidated("review", url, cachedPage, response -> response.toEntity(ReviewPage.class))
+      .map(page -> (page == cachedPage) ? cached : new Validated<>(page.getValue().getReviews(), page.getEtag()))
+      .doOnNext(reviews -> LOG.debug("Found {} reviews for a product with id: {}", reviews.getValue().size(), productId));
+  }
+
+  private Mono<Validated<List<Review>>> requestAllReviews(int productId, Validated<List<Review>> cached) {
+
+    String url = reviewServiceUrl + "/review?productId=" + productId;
+    LOG.debug("Will call getReviews API on URL: {}", url);
+
+    return requestValidated("review-all", url, cached, response -> response.toEntityList(Review.class));
+  }
+
+  private Mono<ReviewPage> requestReviewPage(String baseUrl, int productId, int pageSize, String pageToken) {
+
+    String url = reviewPageUrl(baseUrl, productId, pageSize, pageToken);
+    LOG.debug("Will call getReviewPage API on URL: {}", url);
+
+    return webClient.get().uri(url).retrieve()
+      .bodyToMono(ReviewPage.class)
+      .onErrorMap(WebClientResponseException.class, this::handleException);
+  }
+
+  private String reviewPageUrl(String baseUrl, int productId, int pageSize, String pageToken) {
+    UriComponentsBuilder uri = UriComponentsBuilder.fromHttpUrl(baseUrl + "/review/page")
+      .queryParam("productId", productId)
+      .queryParam("pageSize", pageSize);
+    if (pageToken != null) {
+      uri.queryParam("pageToken", pageToken);
     }
+    return uri.toUriString();
   }
 
-  public List<Review> getReviews(int productId) {
+  /**
+   * GET that, given the cached response, sends its ETag in an If-None-Match header and keeps it if the
+   * core service answers 304 Not Modified. Revalidations are counted per core service and result, the share
+   * of "not-modified" is the share of refreshes that did not transfer the response again.
+   */
+  private <T> Mono<Validated<T>> requestValidated(
+    String service, String url, Validated<T> cached, Function<WebClient.ResponseSpec, Mono<ResponseEntity<T>>> toEntity) {
 
-    try {
-      String url = reviewServiceUrl + productId;
+    String etag = (cached == null) ? null : cached.getEtag();
+    return toEntity.apply(webClient.get().uri(url)
+        .headers(headers -> {
+          if (etag != null) {
+            headers.setIfNoneMatch(etag);
+          }
+        })
+        .retrieve())
+      .onErrorMap(WebClientResponseException.class, this::handleException)
+      .map(response -> {
+        if (etag != null) {
+          boolean notModified = response.getStatusCode() == HttpStatus.NOT_MODIFIED;
+          registry.counter("downstream.revalidations", "service", service, "result", notModified ? "not-modified" : "modified").increment();
+          if (notModified) {
+            return cached;
+          }
+        }
+        return new Validated<>(response.getBody(), response.getHeaders().getETag());
+      });
+  }
+
+  private Mono<Map<Integer, Product>> requestProducts(Collection<Integer> productIds) {
+
+    String url = productServiceUrl + "/product?productIds=" + toQueryValue(productIds);
+    LOG.debug("Will call getProducts API on URL: {}", url);
+
+    return webClient.get().uri(url).retrieve()
+      .bodyToFlux(Product.class)
+      .onErrorMap(WebClientResponseException.class, this::handleException)
+      .collectMap(Product::getProductId);
+  }
+
+  private Mono<Map<Integer, List<Recommendation>>> requestRecommendationsForProducts(Collection<Integer> productIds) {
 
-      LOG.debug("Will call getReviews API on URL: {}", url);
-      List<Review> reviews = restTemplate
-        .exchange(url, GET, null, new ParameterizedTypeReference<List<Review>>() {})
-        .getBody();
+    String url = recommendationServiceUrl + "/recommendation?productIds=" + toQueryValue(productIds);
+    LOG.debug("Will call getRecommendationsForProducts API on URL: {}", url);
 
-      LOG.debug("Found {} reviews for a product with id: {}", reviews.size(), productId);
-      return reviews;
+    return webClient.get().uri(url).retrieve()
+      .bodyToFlux(Recommendation.class)
+      .onErrorMap(WebClientResponseException.class, this::handleException)
+      .collectList()
+      .map(recommendations -> groupByProductId(productIds, recommendations, Recommendation::getProductId));
+  }
+
+  private Mono<Map<Integer, List<Review>>> requestReviewsForProducts(Collection<Integer> productIds) {
+
+    String url = reviewServiceUrl + "/review?productIds=" + toQueryValue(productIds);
+    LOG.debug("Will call getReviewsForProducts API on URL: {}", url);
+
+    return webClient.get().uri(url).retrieve()
+      .bodyToFlux(Review.class)
+      .onErrorMap(WebClientResponseException.class, this::handleException)
+      .collectList()
+      .map(reviews -> groupByProductId(productIds, reviews, Review::getProductId));
+  }
+
+  /**
+   * JSON is accepted as well, with a lower preference, so that core services that can not produce the
+   * service media type still answer, e.g. during a rolling upgrade.
+   */
+  private static List<MediaType> acceptOf(MediaType serviceMediaType) {
+    List<MediaType> accept = new ArrayList<>();
+    accept.add(serviceMediaType);
+    if (!MediaType.APPLICATION_JSON.equalsTypeAndSubtype(serviceMediaType)) {
+      accept.add(new MediaType(MediaType.APPLICATION_JSON, Collections.singletonMap("q", "0.5")));
+    }
+    return accept;
+  }
 
-    } catch (Exception ex) {
-      LOG.warn("Got an exception while requesting reviews, return zero reviews: {}", ex.getMessage());
-      return new ArrayList<>();
+  /**
+   * Every requested product gets an entry, also the ones without any elements,
+   * so that the caches can tell "none found" apart from "not loaded".
+   */
+  private <T> Map<Integer, List<T>> groupByProductId(
+    Collection<Integer> productIds, List<T> elements, Function<T, Integer> productIdOf) {
+
+    Map<Integer, List<T>> grouped = new HashMap<>();
+    productIds.forEach(productId -> grouped.put(productId, new ArrayList<>()));
+    elements.forEach(element -> grouped.computeIfAbsent(productIdOf.apply(element), id -> new ArrayList<>()).add(element));
+    return grouped;
+  }
+
+  private String toQueryValue(Collection<Integer> productIds) {
+    return productIds.stream().map(String::valueOf).collect(Collectors.joining(","));
+  }
+
+  private Throwable handleException(WebClientResponseException ex) {
+
+    switch (ex.getStatusCode()) {
+      case NOT_FOUND:
+        return new NotFoundException(getErrorMessage(ex));
+
+      case UNPROCESSABLE_ENTITY:
+        return new InvalidInputException(getErrorMessage(ex));
+
+      default:
+        LOG.warn("Got an unexpected HTTP error: {}, will rethrow it", ex.getStatusCode());
+        LOG.warn("Error body: {}", ex.getResponseBodyAsString());
+        return ex;
+    }
+  }
+
+  private String getErrorMessage(WebClientResponseException ex) {
+    try {
+      return mapper.readValue(ex.getResponseBodyAsString(), HttpErrorInfo.class).getMessage();
+    } catch (IOException ioex) {
+      return ex.getMessage();
     }
   }
 }
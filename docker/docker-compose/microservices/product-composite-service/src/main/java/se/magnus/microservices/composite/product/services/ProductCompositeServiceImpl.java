@@ -1,74 +1,267 @@
 package se.magnus.microservices.composite.product.services;
 
+import static java.util.Collections.emptyList;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
 import java.util.stream.Collectors;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 import se.magnus.api.composite.product.*;
 import se.magnus.api.core.product.Product;
 import se.magnus.api.core.recommendation.Recommendation;
+import se.magnus.api.core.recommendation.RecommendationStats;
 import se.magnus.api.core.review.Review;
+import se.magnus.api.exceptions.InvalidInputException;
 import se.magnus.api.exceptions.NotFoundException;
+import se.magnus.util.http.ResponseVersion;
 import se.magnus.util.http.ServiceUtil;
 
 @RestController
 public class ProductCompositeServiceImpl implements ProductCompositeService {
 
+  private static final String PART_PRODUCT = "product";
+  private static final String PART_RATINGS = "ratings";
+  private static final String PART_RECOMMENDATIONS = "recommendations";
+  private static final String PART_REVIEWS = "reviews";
+  private static final String PART_SERVICE_ADDRESSES = "serviceAddresses";
+  private static final Set<String> ALL_PARTS = Collections.unmodifiableSet(new LinkedHashSet<>(
+    Arrays.asList(PART_PRODUCT, PART_RATINGS, PART_RECOMMENDATIONS, PART_REVIEWS, PART_SERVICE_ADDRESSES)));
+
   private final ServiceUtil serviceUtil;
   private ProductCompositeIntegration integration;
 
+  private final int maxBatchSize;
+
   @Autowired
   public ProductCompositeServiceImpl(
-    ServiceUtil serviceUtil, ProductCompositeIntegration integration) {
+    ServiceUtil serviceUtil,
+    ProductCompositeIntegration integration,
+    @Value("${app.product-composite.max-batch-size}") int maxBatchSize) {
     
     this.serviceUtil = serviceUtil;
     this.integration = integration;
+    this.maxBatchSize = maxBatchSize;
   }
 
   @Override
-  public ProductAggregate getProduct(int productId) {
+  public Mono<ProductAggregate> getProduct(int productId, List<String> include) {
+
+    Set<String> parts = toParts(include);
+
+    // Only the core services whose part is requested are called.
+    // The calls that are made are subscribed to at the same time by zip,
+    // i.e. the latency is that of the slowest call, not the sum of them
+    Mono<Optional<Validated<Product>>> product = parts.contains(PART_PRODUCT)
+      ? integration.getValidatedProduct(productId)
+        .switchIfEmpty(Mono.error(new NotFoundException("No product found for productId: " + productId)))
+        .map(Optional::of)
+      : Mono.just(Optional.empty());
+    Mono<Optional<Validated<RecommendationStats>>> ratings = parts.contains(PART_RATINGS)
+      ? integration.getValidatedRecommendationStats(productId).map(Optional::of)
+        .defaultIfEmpty(Optional.of(Validated.unversioned(null)))
+      : Mono.just(Optional.empty());
+    Mono<Optional<Validated<List<Recommendation>>>> recommendations = parts.contains(PART_RECOMMENDATIONS)
+      ? integration.getValidatedRecommendations(productId).map(Optional::of)
+      : Mono.just(Optional.empty());
+    Mono<Optional<Validated<List<Review>>>> reviews = parts.contains(PART_REVIEWS)
+      ? integration.getValidatedReviews(productId).map(Optional::of)
+      : Mono.just(Optional.empty());
+
+    String serviceAddress = parts.contains(PART_SERVICE_ADDRESSES) ? serviceUtil.getServiceAddress() : null;
+
+    return Mono.zip(product, ratings, recommendations, reviews)
+      .flatMap(values -> {
+        ProductAggregate aggregate = createProductAggregate(
+          productId,
+          values.getT1().map(Validated::getValue).orElse(null),
+          values.getT2().map(Validated::getValue).map(this::toRatingSummary).orElse(null),
+          values.getT3().map(Validated::getValue).orElse(null),
+          values.getT4().map(Validated::getValue).orElse(null),
+          serviceAddress);
+        String version = versionOf(productId, parts, serviceAddress,
+          Arrays.asList(values.getT1(), values.getT2(), values.getT3(), values.getT4()));
+        return ResponseVersion.set(version).thenReturn(aggregate);
+      });
+  }
+
+  @Override
+  public Flux<ProductAggregateFragment> getProductStream(int productId) {
+
+    Mono<ProductAggregateFragment> product = integration.getProduct(productId)
+      .switchIfEmpty(Mono.error(new NotFoundException("No product found for productId: " + productId)))
+      .map(p -> ProductAggregateFragment.product(p.getProductId(), p.getName(), p.getWeight(), p.getServiceAddress()));
+
+    Flux<ProductAggregateFragment> details = Flux.merge(
+      integration.getRecommendations(productId).collectList()
+        .map(r -> ProductAggregateFragment.recommendations(productId, toRecommendationSummaries(r), r.isEmpty() ? "" : r.get(0).getServiceAddress())),
+      integration.getReviews(productId).collectList()
+        .map(r -> ProductAggregateFragment.reviews(productId, toReviewSummaries(r), r.isEmpty() ? "" : r.get(0).getServiceAddress())));
+
+    // All three calls are subscribed to at once, but the product fragment is always emitted first,
+    // details that answer before it are held back until it has been sent.
+    // The details then follow in the order the core services answer
+    return Flux.mergeSequential(product, details);
+  }
+
+  @Override
+  public Flux<ProductAggregateResult> getProducts(List<Integer> productIds) {
+
+    Set<Integer> requestedIds = new LinkedHashSet<>(productIds);
+    if (requestedIds.size() > maxBatchSize) {
+      throw new InvalidInputException("Too many productIds: " + requestedIds.size() + ", max is: " + maxBatchSize);
+    }
+
+    // Invalid ids are reported per id and never sent downstream,
+    // otherwise one of them would fail the batch calls for all the other ids
+    List<Integer> validIds = requestedIds.stream().filter(id -> id >= 1).collect(Collectors.toList());
+
+    // One call per core service for the whole batch, all three running at the same time
+    return Mono.zip(
+        integration.getProducts(validIds).collectMap(Product::getProductId),
+        integration.getRecommendationsForProducts(validIds).collectMultimap(Recommendation::getProductId),
+        integration.getReviewsForProducts(validIds).collectMultimap(Review::getProductId))
+      .flatMapIterable(values -> requestedIds.stream()
+        .map(id -> createProductAggregateResult(id, values.getT1(), values.getT2(), values.getT3()))
+        .collect(Collectors.toList()));
+  }
 
-    Product product = integration.getProduct(productId);
+  private ProductAggregateResult createProductAggregateResult(
+    int productId,
+    Map<Integer, Product> products,
+    Map<Integer, Collection<Recommendation>> recommendations,
+    Map<Integer, Collection<Review>> reviews) {
+
+    if (productId < 1) {
+      return new ProductAggregateResult(productId, HttpStatus.UNPROCESSABLE_ENTITY.value(), "Invalid productId: " + productId, null);
+    }
+
+    Product product = products.get(productId);
     if (product == null) {
-      throw new NotFoundException("No product found for productId: " + productId);
+      return new ProductAggregateResult(productId, HttpStatus.NOT_FOUND.value(), "No product found for productId: " + productId, null);
     }
 
-    List<Recommendation> recommendations = integration.getRecommendations(productId);
+    List<Recommendation> productRecommendations = new ArrayList<>(recommendations.getOrDefault(productId, emptyList()));
 
-    List<Review> reviews = integration.getReviews(productId);
+    // The batch already holds all the recommendations, so the ratings are computed here instead of asked for
+    ProductAggregate aggregate = createProductAggregate(
+      productId,
+      product,
+      toRatingSummary(productRecommendations),
+      productRecommendations,
+      new ArrayList<>(reviews.getOrDefault(productId, emptyList())),
+      serviceUtil.getServiceAddress());
 
-    return createProductAggregate(product, recommendations, reviews, serviceUtil.getServiceAddress());
+    return new ProductAggregateResult(productId, HttpStatus.OK.value(), null, aggregate);
+  }
+
+  private Set<String> toParts(List<String> include) {
+    if (include == null || include.isEmpty()) {
+      return ALL_PARTS;
+    }
+
+    Set<String> parts = new HashSet<>(include);
+    for (String part : parts) {
+      if (!ALL_PARTS.contains(part)) {
+        throw new InvalidInputException("Invalid include: " + part + ", valid values are: " + ALL_PARTS);
+      }
+    }
+    return parts;
+  }
+
+  /**
+   * The aggregate is built only from the requested parts, the core service responses and this service's
+   * address, so its version is made of them and the ETags of the responses, and its ETag does not need
+   * the body to be hashed. Null, i.e. hash the body, if one of the responses has no ETag, e.g. a fallback
+   * after an error.
+   */
+  private String versionOf(int productId, Set<String> parts, String serviceAddress, List<Optional<? extends Validated<?>>> responses) {
+    StringBuilder version = new StringBuilder()
+      .append(productId).append(' ').append(new TreeSet<>(parts)).append(' ').append(serviceAddress);
+    for (Optional<? extends Validated<?>> response : responses) {
+      if (response.isPresent()) {
+        String etag = response.get().getEtag();
+        if (etag == null) {
+          return null;
+        }
+        version.append(' ').append(etag);
+      }
+    }
+    return version.toString();
   }
 
+  /**
+   * Parts passed as null, i.e. not requested, are left out of the aggregate,
+   * a null serviceAddress leaves out all the service addresses.
+   */
   private ProductAggregate createProductAggregate(
+    int productId,
     Product product,
+    RatingSummary ratings,
     List<Recommendation> recommendations,
     List<Review> reviews,
     String serviceAddress) {
 
     // 1. Setup product info
-    int productId = product.getProductId();
-    String name = product.getName();
-    int weight = product.getWeight();
+    String name = (product == null) ? null : product.getName();
+    Integer weight = (product == null) ? null : product.getWeight();
 
     // 2. Copy summary recommendation info, if available
-    List<RecommendationSummary> recommendationSummaries =
-      (recommendations == null) ? null : recommendations.stream()
-        .map(r -> new RecommendationSummary(r.getRecommendationId(), r.getAuthor(), r.getRate()))
-        .collect(Collectors.toList());
+    List<RecommendationSummary> recommendationSummaries = toRecommendationSummaries(recommendations);
 
     // 3. Copy summary review info, if available
-    List<ReviewSummary> reviewSummaries = 
-      (reviews == null) ? null : reviews.stream()
-        .map(r -> new ReviewSummary(r.getReviewId(), r.getAuthor(), r.getSubject()))
-        .collect(Collectors.toList());
+    List<ReviewSummary> reviewSummaries = toReviewSummaries(reviews);
 
     // 4. Create info regarding the involved microservices addresses
-    String productAddress = product.getServiceAddress();
-    String reviewAddress = (reviews != null && reviews.size() > 0) ? reviews.get(0).getServiceAddress() : "";
-    String recommendationAddress = (recommendations != null && recommendations.size() > 0) ? recommendations.get(0).getServiceAddress() : "";
-    ServiceAddresses serviceAddresses = new ServiceAddresses(serviceAddress, productAddress, reviewAddress, recommendationAddress);
+    ServiceAddresses serviceAddresses = null;
+    if (serviceAddress != null) {
+      String productAddress = (product != null) ? product.getServiceAddress() : "";
+      String reviewAddress = (reviews != null && reviews.size() > 0) ? reviews.get(0).getServiceAddress() : "";
+      String recommendationAddress = (recommendations != null && recommendations.size() > 0) ? recommendations.get(0).getServiceAddress() : "";
+      serviceAddresses = new ServiceAddresses(serviceAddress, productAddress, reviewAddress, recommendationAddress);
+    }
+
+    return new ProductAggregate(productId, name, weight, ratings, recommendationSummaries, reviewSummaries, serviceAddresses);
+  }
+
+  private RatingSummary toRatingSummary(RecommendationStats stats) {
+    return new RatingSummary(stats.getCount(), stats.getMean(), stats.getHistogram());
+  }
+
+  private RatingSummary toRatingSummary(List<Recommendation> recommendations) {
+    Map<Integer, Integer> histogram = new TreeMap<>();
+    long sum = 0;
+    for (Recommendation recommendation : recommendations) {
+      histogram.merge(recommendation.getRate(), 1, Integer::sum);
+      sum += recommendation.getRate();
+    }
+    double mean = recommendations.isEmpty() ? 0 : (double) sum / recommendations.size();
+    return new RatingSummary(recommendations.size(), mean, histogram);
+  }
+
+  private List<RecommendationSummary> toRecommendationSummaries(List<Recommendation> recommendations) {
+    return (recommendations == null) ? null : recommendations.stream()
+      .map(r -> new RecommendationSummary(r.getRecommendationId(), r.getAuthor(), r.getRate()))
+      .collect(Collectors.toList());
+  }
 
-    return new ProductAggregate(productId, name, weight, recommendationSummaries, reviewSummaries, serviceAddresses);
+  private List<ReviewSummary> toReviewSummaries(List<Review> reviews) {
+    return (reviews == null) ? null : reviews.stream()
+      .map(r -> new ReviewSummary(r.getReviewId(), r.getAuthor(), r.getSubject()))
+      .collect(Collectors.toList());
   }
 }
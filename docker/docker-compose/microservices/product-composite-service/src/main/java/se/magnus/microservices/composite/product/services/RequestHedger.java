@@ -0,0 +1,149 @@
+package se.magnus.microservices.composite.product.services;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import reactor.core.publisher.Mono;
+
+/**
+ * Sends a second, identical request to a core service if the first one has not answered within the
+ * observed latency percentile of that service, and takes whichever answers first.
+ *
+ * <p>Hedges are capped by a token bucket: every request adds budget-ratio tokens, up to budget-burst,
+ * and every hedge takes one, i.e. at most budget-ratio extra load in the long run. Only use this for
+ * idempotent calls. A hedge that fails, e.g. because it was rejected by the bulkhead, leaves the request
+ * to the original one.
+ */
+class RequestHedger {
+
+  private static final long TOKEN = 1_000;
+  private static final long MIN_SAMPLES = 20;
+  private static final long DELAY_REFRESH_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+  private final HedgingProperties properties;
+  private final List<String> baseUrls;
+  private final AtomicInteger nextAlternate = new AtomicInteger();
+
+  private final long tokensPerRequest;
+  private final long maxTokens;
+  private final AtomicLong tokens;
+
+  private final Timer latency;
+  private final Counter sent;
+  private final Counter denied;
+  private final Counter won;
+
+  private volatile long delayNanos;
+  private volatile long delayComputedAt;
+
+  /**
+   * @param baseUrls the primary base url first, followed by the alternate ones, if any
+   */
+  RequestHedger(String service, List<String> baseUrls, HedgingProperties properties, MeterRegistry registry) {
+    this.properties = properties;
+    this.baseUrls = baseUrls;
+
+    tokensPerRequest = (long) (properties.getBudgetRatio() * TOKEN);
+    maxTokens = properties.getBudgetBurst() * TOKEN;
+    tokens = new AtomicLong(maxTokens);
+
+    latency = Timer.builder("composite.downstream.latency")
+      .description("Latency of the requests to a core service, used to compute the hedge delay")
+      .tag("service", service)
+      .publishPercentiles(properties.getPercentile())
+      .distributionStatisticExpiry(Duration.ofMinutes(1))
+      .register(registry);
+    sent = hedgeCounter(service, "sent", registry);
+    denied = hedgeCounter(service, "denied", registry);
+    won = hedgeCounter(service, "won", registry);
+
+    delayNanos = properties.getInitialDelay().toNanos();
+  }
+
+  private static Counter hedgeCounter(String service, String outcome, MeterRegistry registry) {
+    return Counter.builder("composite.hedge")
+      .description("Hedged requests sent, denied by the budget, and answering before the original request")
+      .tag("service", service)
+      .tag("outcome", outcome)
+      .register(registry);
+  }
+
+  /**
+   * @param call creates the request for a given base url
+   */
+  <T> Mono<T> execute(Function<String, Mono<T>> call) {
+
+    if (!properties.isEnabled()) {
+      return timed(call.apply(baseUrls.get(0)));
+    }
+
+    return Mono.defer(() -> {
+      addToken();
+
+      Mono<T> primary = timed(call.apply(baseUrls.get(0)));
+      Mono<T> hedge = Mono.delay(Duration.ofNanos(currentDelayNanos()))
+        .flatMap(tick -> {
+          if (!tryTakeToken()) {
+            denied.increment();
+            return Mono.never();
+          }
+          sent.increment();
+          return timed(call.apply(hedgeBaseUrl()))
+            .doOnNext(value -> won.increment())
+            .onErrorResume(ex -> Mono.never());
+        });
+
+      // The first signal wins, also an error of the primary request; a fast error from it
+      // is what it looks like without hedging, and cancels the hedge before it is sent
+      return Mono.firstWithSignal(primary, hedge);
+    });
+  }
+
+  private <T> Mono<T> timed(Mono<T> request) {
+    return Mono.defer(() -> {
+      long start = System.nanoTime();
+      return request.doOnSuccess(value -> latency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS));
+    });
+  }
+
+  private String hedgeBaseUrl() {
+    if (baseUrls.size() == 1) {
+      return baseUrls.get(0);
+    }
+    return baseUrls.get(1 + Math.floorMod(nextAlternate.getAndIncrement(), baseUrls.size() - 1));
+  }
+
+  private long currentDelayNanos() {
+    long now = System.nanoTime();
+    if (now - delayComputedAt > DELAY_REFRESH_NANOS && latency.count() >= MIN_SAMPLES) {
+      delayComputedAt = now;
+      for (ValueAtPercentile value : latency.takeSnapshot().percentileValues()) {
+        long observed = (long) value.value(TimeUnit.NANOSECONDS);
+        delayNanos = Math.max(properties.getMinDelay().toNanos(), Math.min(properties.getMaxDelay().toNanos(), observed));
+      }
+    }
+    return delayNanos;
+  }
+
+  private void addToken() {
+    tokens.getAndUpdate(current -> Math.min(maxTokens, current + tokensPerRequest));
+  }
+
+  private boolean tryTakeToken() {
+    long current;
+    do {
+      current = tokens.get();
+      if (current < TOKEN) {
+        return false;
+      }
+    } while (!tokens.compareAndSet(current, current - TOKEN));
+    return true;
+  }
+}
@@ -0,0 +1,34 @@
+package se.magnus.microservices.composite.product.services;
+
+/**
+ * A response from a core service together with its ETag, the validator used to revalidate it with a
+ * conditional request once it is due for a refresh.
+ */
+public final class Validated<V> {
+
+  private final V value;
+  private final String etag;
+
+  public Validated(V value, String etag) {
+    this.value = value;
+    this.etag = etag;
+  }
+
+  /**
+   * For values whose version is not known, e.g. from batch calls or fallbacks after errors.
+   */
+  public static <V> Validated<V> unversioned(V value) {
+    return new Validated<>(value, null);
+  }
+
+  public V getValue() {
+    return value;
+  }
+
+  /**
+   * @return the strong ETag of the response, or null if it is not known
+   */
+  public String getEtag() {
+    return etag;
+  }
+}
@@ -0,0 +1,77 @@
+package se.magnus.microservices.composite.product;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+import reactor.netty.resources.ConnectionProvider;
+
+@SpringBootTest(webEnvironment = RANDOM_PORT, properties = {
+  "app.warmup.enabled=false",
+  "app.http-client.max-connections=3",
+  "app.http-client.max-idle-time=200ms",
+  "app.http-client.eviction-interval=50ms"})
+class ConnectionPoolTests {
+
+  private static final String POOL_TOTAL = "reactor.netty.connection.provider.total.connections";
+
+  @Autowired private ConnectionProvider connectionProvider;
+
+  @Autowired private WebClient.Builder webClientBuilder;
+
+  @Autowired private MeterRegistry registry;
+
+  private DisposableServer server;
+
+  @BeforeEach
+  void setUp() {
+    server = HttpServer.create()
+      .port(0)
+      .route(routes -> routes.get("/ping", (request, response) -> response.sendString(Mono.just("pong"))))
+      .bindNow();
+  }
+
+  @AfterEach
+  void tearDown() {
+    server.disposeNow();
+  }
+
+  @Test
+  void poolIsBoundedAndEvictsIdleConnections() throws InterruptedException {
+
+    assertEquals(3, connectionProvider.maxConnections());
+
+    String response = webClientBuilder.build().get()
+      .uri("http://localhost:" + server.port() + "/ping")
+      .retrieve()
+      .bodyToMono(String.class)
+      .block();
+    assertEquals("pong", response);
+
+    // The pool gauges of the host, and the acquire timer of the wrapper, are registered by the request
+    assertFalse(registry.find(POOL_TOTAL).tag("name", "core-services").gauges().isEmpty());
+    assertEquals(1, registry.get("composite.http.client.connection.acquire").tag("outcome", "success").timer().count());
+
+    // The connection is back in the pool, idle, and closed by the background eviction
+    long timeout = System.currentTimeMillis() + 5000;
+    while (totalConnections() > 0 && System.currentTimeMillis() < timeout) {
+      Thread.sleep(50);
+    }
+    assertEquals(0, totalConnections());
+  }
+
+  private double totalConnections() {
+    return registry.find(POOL_TOTAL).tag("name", "core-services").gauges().stream().mapToDouble(Gauge::value).sum();
+  }
+}
@@ -1,50 +1,104 @@
 package se.magnus.microservices.composite.product;
 
+import static java.util.Collections.emptyList;
 import static java.util.Collections.singletonList;
+import static java.util.Collections.singletonMap;
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
+import static org.springframework.http.HttpStatus.GATEWAY_TIMEOUT;
 import static org.springframework.http.HttpStatus.UNPROCESSABLE_ENTITY;
 import static org.springframework.http.MediaType.APPLICATION_JSON;
+import static org.springframework.http.MediaType.APPLICATION_NDJSON;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.List;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpHeaders;
 import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 import se.magnus.api.core.product.Product;
 import se.magnus.api.core.recommendation.Recommendation;
+import se.magnus.api.core.recommendation.RecommendationStats;
 import se.magnus.api.core.review.Review;
 import se.magnus.api.exceptions.InvalidInputException;
 import se.magnus.api.exceptions.NotFoundException;
 import se.magnus.microservices.composite.product.services.ProductCompositeIntegration;
+import se.magnus.microservices.composite.product.services.Validated;
+import se.magnus.util.http.Deadline;
 
-@SpringBootTest(webEnvironment = RANDOM_PORT)
+@SpringBootTest(webEnvironment = RANDOM_PORT, properties = {"app.warmup.enabled=false"})
 class ProductCompositeServiceApplicationTests {
 
   private static final int PRODUCT_ID_OK = 1;
   private static final int PRODUCT_ID_NOT_FOUND = 2;
   private static final int PRODUCT_ID_INVALID = 3;
+  private static final int PRODUCT_ID_SLOW = 4;
 
   @Autowired private WebTestClient client;
 
+  @Autowired private MeterRegistry registry;
+
   @MockBean private ProductCompositeIntegration compositeIntegration;
 
   @BeforeEach
   void setUp() {
 
+    when(compositeIntegration.getRecommendations(anyInt())).thenReturn(Flux.empty());
+    when(compositeIntegration.getReviews(anyInt())).thenReturn(Flux.empty());
+    when(compositeIntegration.getRecommendationStats(anyInt())).thenReturn(Mono.empty());
+    when(compositeIntegration.getValidatedRecommendations(anyInt())).thenReturn(Mono.just(Validated.unversioned(emptyList())));
+    when(compositeIntegration.getValidatedReviews(anyInt())).thenReturn(Mono.just(Validated.unversioned(emptyList())));
+    when(compositeIntegration.getValidatedRecommendationStats(anyInt())).thenReturn(Mono.empty());
+
     when(compositeIntegration.getProduct(PRODUCT_ID_OK))
-      .thenReturn(new Product(PRODUCT_ID_OK, "name", 1, "mock-address"));
+      .thenReturn(Mono.just(new Product(PRODUCT_ID_OK, "name", 1, "mock-address")));
     when(compositeIntegration.getRecommendations(PRODUCT_ID_OK))
-      .thenReturn(singletonList(new Recommendation(PRODUCT_ID_OK, 1, "author", 1, "content", "mock address")));
+      .thenReturn(Flux.fromIterable(singletonList(new Recommendation(PRODUCT_ID_OK, 1, "author", 1, "content", "mock address"))));
+    when(compositeIntegration.getRecommendationStats(PRODUCT_ID_OK))
+      .thenReturn(Mono.just(new RecommendationStats(PRODUCT_ID_OK, 1, 1, 1.0, singletonMap(1, 1), "mock address")));
     when(compositeIntegration.getReviews(PRODUCT_ID_OK))
-      .thenReturn(singletonList(new Review(PRODUCT_ID_OK, 1, "author", "subject", "content", "mock address")));
+      .thenReturn(Flux.fromIterable(singletonList(new Review(PRODUCT_ID_OK, 1, "author", "subject", "content", "mock address"))));
+
+    when(compositeIntegration.getValidatedProduct(PRODUCT_ID_OK))
+      .thenReturn(Mono.just(new Validated<>(new Product(PRODUCT_ID_OK, "name", 1, "mock-address"), "\"product-1\"")));
+    when(compositeIntegration.getValidatedRecommendations(PRODUCT_ID_OK))
+      .thenReturn(Mono.just(new Validated<>(singletonList(new Recommendation(PRODUCT_ID_OK, 1, "author", 1, "content", "mock address")), "\"recommendation-1\"")));
+    when(compositeIntegration.getValidatedRecommendationStats(PRODUCT_ID_OK))
+      .thenReturn(Mono.just(new Validated<>(new RecommendationStats(PRODUCT_ID_OK, 1, 1, 1.0, singletonMap(1, 1), "mock address"), "\"stats-1\"")));
+    when(compositeIntegration.getValidatedReviews(PRODUCT_ID_OK))
+      .thenReturn(Mono.just(new Validated<>(singletonList(new Review(PRODUCT_ID_OK, 1, "author", "subject", "content", "mock address")), "\"review-1\"")));
 
     when(compositeIntegration.getProduct(PRODUCT_ID_NOT_FOUND))
-      .thenThrow(new NotFoundException("NOT FOUND: " + PRODUCT_ID_NOT_FOUND));
+      .thenReturn(Mono.error(new NotFoundException("NOT FOUND: " + PRODUCT_ID_NOT_FOUND)));
+    when(compositeIntegration.getValidatedProduct(PRODUCT_ID_NOT_FOUND))
+      .thenReturn(Mono.error(new NotFoundException("NOT FOUND: " + PRODUCT_ID_NOT_FOUND)));
 
-    when(compositeIntegration.getProduct(PRODUCT_ID_INVALID))
-      .thenThrow(new InvalidInputException("INVALID: " + PRODUCT_ID_INVALID));
+    when(compositeIntegration.getValidatedProduct(PRODUCT_ID_INVALID))
+      .thenReturn(Mono.error(new InvalidInputException("INVALID: " + PRODUCT_ID_INVALID)));
+
+    when(compositeIntegration.getValidatedProduct(PRODUCT_ID_SLOW))
+      .thenReturn(Mono.never());
+
+    when(compositeIntegration.getProducts(anyList()))
+      .thenReturn(Flux.just(new Product(PRODUCT_ID_OK, "name", 1, "mock-address")));
+    when(compositeIntegration.getRecommendationsForProducts(anyList()))
+      .thenReturn(Flux.just(new Recommendation(PRODUCT_ID_OK, 1, "author", 1, "content", "mock address")));
+    when(compositeIntegration.getReviewsForProducts(anyList()))
+      .thenReturn(Flux.just(new Review(PRODUCT_ID_OK, 1, "author", "subject", "content", "mock address")));
   }
 
   @Test
@@ -61,6 +115,8 @@ class ProductCompositeServiceApplicationTests {
       .expectHeader().contentType(APPLICATION_JSON)
       .expectBody()
         .jsonPath("$.productId").isEqualTo(PRODUCT_ID_OK)
+        .jsonPath("$.ratings.count").isEqualTo(1)
+        .jsonPath("$.ratings.mean").isEqualTo(1.0)
         .jsonPath("$.recommendations.length()").isEqualTo(1)
         .jsonPath("$.reviews.length()").isEqualTo(1);
   }
@@ -92,4 +148,168 @@ class ProductCompositeServiceApplicationTests {
         .jsonPath("$.path").isEqualTo("/product-composite/" + PRODUCT_ID_INVALID)
         .jsonPath("$.message").isEqualTo("INVALID: " + PRODUCT_ID_INVALID);
   }
+
+  @Test
+  void getProductWithIncludedPartsOnly() {
+
+    client.get()
+      .uri("/product-composite/" + PRODUCT_ID_OK + "?include=reviews")
+      .accept(APPLICATION_JSON)
+      .exchange()
+      .expectStatus().isOk()
+      .expectHeader().contentType(APPLICATION_JSON)
+      .expectBody()
+        .jsonPath("$.productId").isEqualTo(PRODUCT_ID_OK)
+        .jsonPath("$.name").doesNotExist()
+        .jsonPath("$.weight").doesNotExist()
+        .jsonPath("$.recommendations").doesNotExist()
+        .jsonPath("$.serviceAddresses").doesNotExist()
+        .jsonPath("$.reviews.length()").isEqualTo(1);
+
+    verify(compositeIntegration, never()).getValidatedProduct(anyInt());
+    verify(compositeIntegration, never()).getValidatedRecommendations(anyInt());
+    verify(compositeIntegration, never()).getValidatedRecommendationStats(anyInt());
+  }
+
+  @Test
+  void getProductNotModified() {
+
+    String etag = getProductEtag("");
+
+    client.get()
+      .uri("/product-composite/" + PRODUCT_ID_OK)
+      .accept(APPLICATION_JSON)
+      .ifNoneMatch(etag)
+      .exchange()
+      .expectStatus().isNotModified()
+      .expectHeader().valueEquals(HttpHeaders.ETAG, etag)
+      .expectBody().isEmpty();
+
+    // Other parts, or a changed core service response, make another version
+    assertNotEquals(etag, getProductEtag("?include=product,reviews"));
+
+    when(compositeIntegration.getValidatedReviews(PRODUCT_ID_OK))
+      .thenReturn(Mono.just(new Validated<>(emptyList(), "\"review-2\"")));
+    assertNotEquals(etag, getProductEtag(""));
+  }
+
+  @Test
+  void getProductNotModifiedIsNotCompressed() {
+
+    String etag = client.get()
+      .uri("/product-composite/" + PRODUCT_ID_OK)
+      .accept(APPLICATION_JSON)
+      .header(HttpHeaders.ACCEPT_ENCODING, "gzip")
+      .exchange()
+      .expectStatus().isOk()
+      .returnResult(String.class)
+      .getResponseHeaders().getETag();
+    assertTrue(etag.endsWith("-gzip\""));
+
+    // The versioned 304 is answered before the body is encoded, let alone compressed
+    long skipped = registry.get("http.server.compression.skipped").summary().count();
+    client.get()
+      .uri("/product-composite/" + PRODUCT_ID_OK)
+      .accept(APPLICATION_JSON)
+      .header(HttpHeaders.ACCEPT_ENCODING, "gzip")
+      .ifNoneMatch(etag)
+      .exchange()
+      .expectStatus().isNotModified()
+      .expectHeader().valueEquals(HttpHeaders.ETAG, etag)
+      .expectHeader().valueEquals(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING)
+      .expectBody().isEmpty();
+    assertEquals(skipped, registry.get("http.server.compression.skipped").summary().count());
+  }
+
+  @Test
+  void getProductInvalidInclude() {
+
+    client.get()
+      .uri("/product-composite/" + PRODUCT_ID_OK + "?include=no-such-part")
+      .accept(APPLICATION_JSON)
+      .exchange()
+      .expectStatus().isEqualTo(UNPROCESSABLE_ENTITY)
+      .expectHeader().contentType(APPLICATION_JSON)
+      .expectBody()
+        .jsonPath("$.path").isEqualTo("/product-composite/" + PRODUCT_ID_OK)
+        .jsonPath("$.message").value(containsString("Invalid include: no-such-part"));
+  }
+
+  @Test
+  void getProductStream() {
+
+    List<String> fragments = client.get()
+      .uri("/product-composite/" + PRODUCT_ID_OK + "/stream")
+      .accept(APPLICATION_NDJSON)
+      .exchange()
+      .expectStatus().isOk()
+      .expectHeader().contentTypeCompatibleWith(APPLICATION_NDJSON)
+      .returnResult(String.class)
+      .getResponseBody()
+      .collectList()
+      .block();
+
+    assertEquals(3, fragments.size());
+    assertTrue(fragments.get(0).contains("\"type\":\"PRODUCT\""));
+    assertTrue(fragments.stream().anyMatch(f -> f.contains("\"type\":\"RECOMMENDATIONS\"")));
+    assertTrue(fragments.stream().anyMatch(f -> f.contains("\"type\":\"REVIEWS\"")));
+  }
+
+  @Test
+  void getProductStreamNotFound() {
+
+    client.get()
+      .uri("/product-composite/" + PRODUCT_ID_NOT_FOUND + "/stream")
+      .accept(APPLICATION_NDJSON)
+      .exchange()
+      .expectStatus().isNotFound();
+  }
+
+  @Test
+  void getProductDeadlineExceeded() {
+
+    client.get()
+      .uri("/product-composite/" + PRODUCT_ID_SLOW)
+      .header(Deadline.HEADER, "200")
+      .accept(APPLICATION_JSON)
+      .exchange()
+      .expectStatus().isEqualTo(GATEWAY_TIMEOUT)
+      .expectHeader().contentType(APPLICATION_JSON)
+      .expectBody()
+        .jsonPath("$.path").isEqualTo("/product-composite/" + PRODUCT_ID_SLOW);
+  }
+
+  @Test
+  void getProductsByIds() {
+
+    client.get()
+      .uri("/product-composite?ids=" + PRODUCT_ID_OK + "," + PRODUCT_ID_NOT_FOUND + ",-1")
+      .accept(APPLICATION_JSON)
+      .exchange()
+      .expectStatus().isOk()
+      .expectHeader().contentType(APPLICATION_JSON)
+      .expectBody()
+        .jsonPath("$.length()").isEqualTo(3)
+        .jsonPath("$[0].status").isEqualTo(200)
+        .jsonPath("$[0].product.productId").isEqualTo(PRODUCT_ID_OK)
+        .jsonPath("$[0].product.ratings.count").isEqualTo(1)
+        .jsonPath("$[0].product.recommendations.length()").isEqualTo(1)
+        .jsonPath("$[0].product.reviews.length()").isEqualTo(1)
+        .jsonPath("$[1].status").isEqualTo(404)
+        .jsonPath("$[1].message").isEqualTo("No product found for productId: " + PRODUCT_ID_NOT_FOUND)
+        .jsonPath("$[2].status").isEqualTo(422)
+        .jsonPath("$[2].message").isEqualTo("Invalid productId: -1");
+  }
+
+  private String getProductEtag(String query) {
+    String etag = client.get()
+      .uri("/product-composite/" + PRODUCT_ID_OK + query)
+      .accept(APPLICATION_JSON)
+      .exchange()
+      .expectStatus().isOk()
+      .returnResult(String.class)
+      .getResponseHeaders().getETag();
+    assertNotNull(etag);
+    return etag;
+  }
 }
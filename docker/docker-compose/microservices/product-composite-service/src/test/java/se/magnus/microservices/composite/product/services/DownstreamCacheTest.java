@@ -0,0 +1,142 @@
+package se.magnus.microservices.composite.product.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+import reactor.util.context.Context;
+import se.magnus.util.http.Deadline;
+
+class DownstreamCacheTest {
+
+  private MeterRegistry registry;
+  private AtomicInteger loads;
+  private AtomicBoolean loadHadDeadline;
+  private Sinks.One<Validated<String>> response;
+  private DownstreamCache<String> cache;
+
+  @BeforeEach
+  void setUp() {
+    registry = new SimpleMeterRegistry();
+    loads = new AtomicInteger();
+    loadHadDeadline = new AtomicBoolean();
+    response = Sinks.one();
+    cache = new DownstreamCache<>("test", new DownstreamCacheProperties.Spec(),
+      (productId, cached) -> Mono.deferContextual(context -> {
+        loadHadDeadline.compareAndSet(false, context.hasKey(Deadline.class));
+        // Only the first load waits for the sink, later ones answer right away
+        return (loads.incrementAndGet() == 1) ? response.asMono() : Mono.just(Validated.unversioned("next"));
+      }),
+      productIds -> Mono.just(Collections.emptyMap()), registry);
+  }
+
+  @Test
+  void concurrentMissesShareOneLoad() {
+
+    Mono<String> first = cache.get(1);
+    Mono<String> second = cache.get(1);
+
+    StepVerifier.create(Mono.zip(first, second))
+      .then(() -> response.tryEmitValue(Validated.unversioned("value")))
+      .expectNextMatches(values -> values.getT1().equals("value") && values.getT2().equals("value"))
+      .verifyComplete();
+
+    assertEquals(1, loads.get());
+    assertEquals(1.0, registry.counter("composite.cache.loads", "cache", "test", "outcome", "executed").count());
+    assertEquals(1.0, registry.counter("composite.cache.loads", "cache", "test", "outcome", "coalesced").count());
+  }
+
+  @Test
+  void sharedLoadOutlivesTheDeadlineOfTheCallerThatStartedIt() {
+
+    Mono<String> hurried = cache.get(1).contextWrite(Context.of(Deadline.class, Deadline.after(Duration.ofMillis(50))));
+    Mono<String> patient = cache.get(1);
+
+    StepVerifier.create(hurried)
+      .expectError(TimeoutException.class)
+      .verify();
+    StepVerifier.create(patient)
+      .then(() -> response.tryEmitValue(Validated.unversioned("value")))
+      .expectNext("value")
+      .verifyComplete();
+
+    assertEquals(1, loads.get());
+    assertFalse(loadHadDeadline.get());
+  }
+
+  @Test
+  void errorsAreSharedAndNotCached() {
+
+    Mono<String> first = cache.get(1);
+    Mono<String> second = cache.get(1);
+
+    StepVerifier.create(Mono.zip(first.onErrorReturn("error"), second.onErrorReturn("error")))
+      .then(() -> response.tryEmitError(new IllegalStateException()))
+      .expectNextMatches(values -> values.getT1().equals("error") && values.getT2().equals("error"))
+      .verifyComplete();
+
+    StepVerifier.create(cache.get(1))
+      .expectNext("next")
+      .verifyComplete();
+    assertEquals(2, loads.get());
+  }
+
+  @Test
+  void loaderErrorIsNotCached() {
+
+    response.tryEmitError(new IllegalStateException());
+    StepVerifier.create(cache.get(1))
+      .expectError(IllegalStateException.class)
+      .verify();
+
+    StepVerifier.create(cache.get(1))
+      .expectNext("next")
+      .verifyComplete();
+    assertEquals(2, loads.get());
+    assertEquals(2.0, registry.counter("composite.cache.loads", "cache", "test", "outcome", "executed").count());
+  }
+
+  @Test
+  void staleValueIsServedWhileItIsRefreshed() throws InterruptedException {
+
+    DownstreamCacheProperties.Spec spec = new DownstreamCacheProperties.Spec();
+    spec.setTtl(Duration.ofMillis(50));
+    AtomicReference<Validated<String>> revalidated = new AtomicReference<>();
+    cache = new DownstreamCache<>("stale", spec,
+      (productId, cached) -> {
+        if (cached == null) {
+          return Mono.just(new Validated<>("first", "\"1\""));
+        }
+        revalidated.set(cached);
+        return response.asMono();
+      },
+      productIds -> Mono.just(Collections.emptyMap()), registry);
+
+    assertEquals("first", cache.get(1).block());
+    Thread.sleep(100);
+
+    // Past the ttl, the first read starts the refresh and neither waits for it
+    assertEquals("first", cache.get(1).block());
+    assertEquals("first", cache.get(1).block());
+
+    response.tryEmitValue(new Validated<>("second", "\"2\""));
+    long timeout = System.currentTimeMillis() + 5000;
+    while (!"second".equals(cache.get(1).block()) && System.currentTimeMillis() < timeout) {
+      Thread.sleep(10);
+    }
+    assertEquals("second", cache.get(1).block());
+    assertEquals("\"1\"", revalidated.get().getEtag());
+  }
+}
@@ -0,0 +1,96 @@
+package se.magnus.microservices.composite.product.services;
+
+import static java.util.Collections.singletonList;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.http.MediaType.APPLICATION_JSON;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+/**
+ * Runs the integration against canned core service responses, keyed by the url they answer.
+ */
+class ProductCompositeIntegrationTest {
+
+  private static final String RECOMMENDATION_URL = "http://recommendation:7002";
+  private static final String REVIEW_URL = "http://review:7003";
+
+  private final Map<String, String> responses = new HashMap<>();
+  private final List<String> requestedUrls = new ArrayList<>();
+
+  private ProductCompositeIntegration integration;
+
+  @BeforeEach
+  void setUp() {
+    WebClient.Builder webClient = WebClient.builder().exchangeFunction(request -> {
+      String url = request.url().toString();
+      requestedUrls.add(url);
+      String body = responses.get(url);
+      if (body == null) {
+        return Mono.just(ClientResponse.create(HttpStatus.NOT_FOUND).build());
+      }
+      return Mono.just(ClientResponse.create(HttpStatus.OK)
+        .header(HttpHeaders.CONTENT_TYPE, APPLICATION_JSON.toString())
+        .body(body)
+        .build());
+    });
+
+    integration = new ProductCompositeIntegration(webClient, new ObjectMapper(), new SimpleMeterRegistry(),
+      new DownstreamCacheProperties(), new HedgingProperties(), CircuitBreakerRegistry.ofDefaults(), BulkheadRegistry.ofDefaults(),
+      "product", 7001, "recommendation", 7002, 1, "review", 7003, 1, APPLICATION_JSON);
+  }
+
+  @Test
+  void topAndAllRecommendationsAreCachedApart() {
+
+    responses.put(RECOMMENDATION_URL + "/recommendation?productId=1&limit=1&orderBy=rate", "[" + recommendation(3, 5) + "]");
+    responses.put(RECOMMENDATION_URL + "/recommendation?productIds=1",
+      "[" + recommendation(1, 1) + "," + recommendation(2, 1) + "," + recommendation(3, 5) + "]");
+
+    assertEquals(1, integration.getRecommendations(1).collectList().block().size());
+    assertEquals(3, integration.getRecommendationsForProducts(singletonList(1)).collectList().block().size());
+
+    // Both are cached now, and each still returns its own selection
+    requestedUrls.clear();
+    assertEquals(1, integration.getRecommendations(1).collectList().block().size());
+    assertEquals(3, integration.getRecommendationsForProducts(singletonList(1)).collectList().block().size());
+    assertEquals(0, requestedUrls.size());
+  }
+
+  @Test
+  void firstPageAndAllReviewsAreCachedApart() {
+
+    responses.put(REVIEW_URL + "/review?productIds=1", "[" + review(1) + "," + review(2) + "]");
+    responses.put(REVIEW_URL + "/review/page?productId=1&pageSize=1", "{\"reviews\":[" + review(1) + "],\"nextPageToken\":\"t\"}");
+
+    // The batch first this time, the single product lookup must not serve its full list
+    assertEquals(2, integration.getReviewsForProducts(singletonList(1)).collectList().block().size());
+    assertEquals(1, integration.getReviews(1).collectList().block().size());
+
+    requestedUrls.clear();
+    assertEquals(2, integration.getReviewsForProducts(singletonList(1)).collectList().block().size());
+    assertEquals(1, integration.getReviews(1).collectList().block().size());
+    assertEquals(0, requestedUrls.size());
+  }
+
+  private static String review(int reviewId) {
+    return "{\"productId\":1,\"reviewId\":" + reviewId + ",\"author\":\"a\",\"subject\":\"s\",\"content\":\"c\"}";
+  }
+
+  private static String recommendation(int recommendationId, int rate) {
+    return "{\"productId\":1,\"recommendationId\":" + recommendationId + ",\"author\":\"a\",\"rate\":" + rate + ",\"content\":\"c\"}";
+  }
+}
@@ -0,0 +1,87 @@
+package se.magnus.microservices.composite.product.services;
+
+import static java.util.Arrays.asList;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+class RequestHedgerTest {
+
+  private MeterRegistry registry;
+  private HedgingProperties properties;
+
+  @BeforeEach
+  void setUp() {
+    registry = new SimpleMeterRegistry();
+    properties = new HedgingProperties();
+    properties.setEnabled(true);
+    properties.setInitialDelay(Duration.ofMillis(50));
+  }
+
+  @Test
+  void slowRequestIsHedgedToAlternateInstance() {
+
+    RequestHedger hedger = new RequestHedger("test", asList("primary", "alternate"), properties, registry);
+
+    StepVerifier.create(hedger.execute(baseUrl -> baseUrl.equals("primary") ? Mono.never() : Mono.just(baseUrl)))
+      .expectNext("alternate")
+      .verifyComplete();
+
+    assertEquals(1.0, hedgeCount("sent"));
+    assertEquals(1.0, hedgeCount("won"));
+  }
+
+  @Test
+  void failedHedgeLeavesRequestToPrimary() {
+
+    RequestHedger hedger = new RequestHedger("test", asList("primary", "alternate"), properties, registry);
+
+    StepVerifier.create(hedger.execute(baseUrl -> baseUrl.equals("primary")
+        ? Mono.just(baseUrl).delayElement(Duration.ofMillis(200))
+        : Mono.error(new IllegalStateException("bulkhead full"))))
+      .expectNext("primary")
+      .verifyComplete();
+
+    assertEquals(1.0, hedgeCount("sent"));
+    assertEquals(0.0, hedgeCount("won"));
+  }
+
+  @Test
+  void fastRequestIsNotHedged() {
+
+    RequestHedger hedger = new RequestHedger("test", asList("primary", "alternate"), properties, registry);
+
+    StepVerifier.create(hedger.execute(Mono::just))
+      .expectNext("primary")
+      .verifyComplete();
+
+    assertEquals(0.0, hedgeCount("sent"));
+  }
+
+  @Test
+  void hedgesAreCappedByBudget() {
+
+    properties.setBudgetBurst(1);
+    properties.setBudgetRatio(0.0);
+    RequestHedger hedger = new RequestHedger("test", asList("primary"), properties, registry);
+
+    for (int i = 0; i < 2; i++) {
+      StepVerifier.create(hedger.execute(baseUrl -> Mono.just(baseUrl).delayElement(Duration.ofMillis(200))))
+        .expectNext("primary")
+        .verifyComplete();
+    }
+
+    assertEquals(1.0, hedgeCount("sent"));
+    assertEquals(1.0, hedgeCount("denied"));
+  }
+
+  private double hedgeCount(String outcome) {
+    return registry.counter("composite.hedge", "service", "test", "outcome", outcome).count();
+  }
+}
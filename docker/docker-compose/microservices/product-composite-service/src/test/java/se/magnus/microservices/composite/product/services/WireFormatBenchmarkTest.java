@@ -0,0 +1,112 @@
+package se.magnus.microservices.composite.product.services;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import se.magnus.api.core.recommendation.Recommendation;
+import se.magnus.api.core.review.Review;
+
+/**
+ * Compares the payload size and the CPU time to encode and decode the responses of the core services
+ * in JSON and Smile. Not part of the regular build, run it with "./gradlew benchmark".
+ */
+@Tag("benchmark")
+class WireFormatBenchmarkTest {
+
+  private static final int WARMUP_ITERATIONS = 20_000;
+  private static final int ITERATIONS = 50_000;
+
+  private static final TypeReference<List<Review>> REVIEWS = new TypeReference<List<Review>>() {};
+  private static final TypeReference<List<Recommendation>> RECOMMENDATIONS = new TypeReference<List<Recommendation>>() {};
+
+  private final ObjectMapper json = Jackson2ObjectMapperBuilder.json().build();
+  private final ObjectMapper smile = Jackson2ObjectMapperBuilder.smile().build();
+
+  private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+  @Test
+  void reviewPage() throws Exception {
+
+    // A first page of reviews with content of a few paragraphs
+    List<Review> reviews = new ArrayList<>();
+    for (int reviewId = 1; reviewId <= 20; reviewId++) {
+      reviews.add(new Review(1, reviewId, "Author " + reviewId, "Subject " + reviewId, text(2000), "review-service/10.0.0.1:8080"));
+    }
+
+    compare("20 reviews", reviews, REVIEWS);
+  }
+
+  @Test
+  void topRecommendations() throws Exception {
+
+    List<Recommendation> recommendations = new ArrayList<>();
+    for (int recommendationId = 1; recommendationId <= 10; recommendationId++) {
+      recommendations.add(new Recommendation(1, recommendationId, "Author " + recommendationId, recommendationId % 5,
+        text(200), "recommendation-service/10.0.0.2:8080"));
+    }
+
+    compare("10 recommendations", recommendations, RECOMMENDATIONS);
+  }
+
+  private <T> void compare(String payload, T value, TypeReference<T> type) throws Exception {
+
+    byte[] jsonBytes = json.writeValueAsBytes(value);
+    byte[] smileBytes = smile.writeValueAsBytes(value);
+    assertArrayEquals(jsonBytes, json.writeValueAsBytes(smile.readValue(smileBytes, type)));
+
+    System.out.printf("%-20s %-6s %8s %12s %12s%n", "payload", "format", "bytes", "encode ns/op", "decode ns/op");
+    System.out.printf("%-20s %-6s %8d %12d %12d%n", payload, "json", jsonBytes.length, encodeNanos(json, value), decodeNanos(json, jsonBytes, type));
+    System.out.printf("%-20s %-6s %8d %12d %12d%n", payload, "smile", smileBytes.length, encodeNanos(smile, value), decodeNanos(smile, smileBytes, type));
+
+    assertTrue(smileBytes.length < jsonBytes.length);
+  }
+
+  private long encodeNanos(ObjectMapper mapper, Object value) throws Exception {
+    long sink = 0;
+    for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+      sink += mapper.writeValueAsBytes(value).length;
+    }
+    long start = threads.getCurrentThreadCpuTime();
+    for (int i = 0; i < ITERATIONS; i++) {
+      sink += mapper.writeValueAsBytes(value).length;
+    }
+    long nanos = (threads.getCurrentThreadCpuTime() - start) / ITERATIONS;
+    assertTrue(sink > 0);
+    return nanos;
+  }
+
+  private <T> long decodeNanos(ObjectMapper mapper, byte[] bytes, TypeReference<T> type) throws Exception {
+    long sink = 0;
+    for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+      sink += (mapper.readValue(bytes, type) != null) ? 1 : 0;
+    }
+    long start = threads.getCurrentThreadCpuTime();
+    for (int i = 0; i < ITERATIONS; i++) {
+      sink += (mapper.readValue(bytes, type) != null) ? 1 : 0;
+    }
+    long nanos = (threads.getCurrentThreadCpuTime() - start) / ITERATIONS;
+    assertTrue(sink > 0);
+    return nanos;
+  }
+
+  /**
+   * Text of about the given length with words, punctuation and line breaks, as users write it.
+   */
+  private static String text(int length) {
+    String words = "The product arrived quickly and works \"as advertised\", although the manual could be clearer.\n";
+    StringBuilder text = new StringBuilder(length + words.length());
+    while (text.length() < length) {
+      text.append(words);
+    }
+    return text.toString();
+  }
+}
@@ -1,9 +1,14 @@
 package se.magnus.microservices.core.product.services;
 
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 import se.magnus.api.core.product.Product;
 import se.magnus.api.core.product.ProductService;
 import se.magnus.api.exceptions.InvalidInputException;
@@ -23,7 +28,7 @@ public class ProductServiceImpl implements ProductService {
   }
 
   @Override
-  public Product getProduct(int productId) {
+  public Mono<Product> getProduct(int productId) {
     LOG.debug("/product return the found product for productId={}", productId);
 
     if (productId < 1) {
@@ -31,9 +36,33 @@ public class ProductServiceImpl implements ProductService {
     }
 
     if (productId == 13) {
-      throw new NotFoundException("No product found for productId: " + productId);
+      return Mono.error(new NotFoundException("No product found for productId: " + productId));
     }
 
-    return new Product(productId, "name-" + productId, 123, serviceUtil.getServiceAddress());
+    return Mono.just(new Product(productId, "name-" + productId, 123, serviceUtil.getServiceAddress()));
+  }
+
+  @Override
+  public Flux<Product> getProducts(List<Integer> productIds) {
+    LOG.debug("/product return the found products for productIds={}", productIds);
+
+    for (int productId : productIds) {
+      if (productId < 1) {
+        throw new InvalidInputException("Invalid productId: " + productId);
+      }
+    }
+
+    List<Product> list = new ArrayList<>();
+    for (int productId : new LinkedHashSet<>(productIds)) {
+      if (productId == 13) {
+        LOG.debug("No product found for productId: {}", productId);
+        continue;
+      }
+      list.add(new Product(productId, "name-" + productId, 123, serviceUtil.getServiceAddress()));
+    }
+
+    LOG.debug("/product response size: {}", list.size());
+
+    return Flux.fromIterable(list);
   }
 }
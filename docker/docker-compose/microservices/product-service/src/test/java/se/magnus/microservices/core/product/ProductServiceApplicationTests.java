@@ -1,20 +1,33 @@
 package se.magnus.microservices.core.product;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
 import static org.springframework.http.HttpStatus.BAD_REQUEST;
 import static org.springframework.http.HttpStatus.UNPROCESSABLE_ENTITY;
 import static org.springframework.http.MediaType.APPLICATION_JSON;
 
+import com.fasterxml.jackson.databind.ser.DefaultSerializerProvider;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.test.web.reactive.server.WebTestClient;
+import se.magnus.util.http.Deadline;
+import se.magnus.util.http.SmileCodecCustomizer;
 
 @SpringBootTest(webEnvironment = RANDOM_PORT)
 class ProductServiceApplicationTests {
 
   @Autowired private WebTestClient client;
 
+  @Autowired private MeterRegistry registry;
+
+  @Autowired private SmileCodecCustomizer smileCodecs;
+
   @Test
   void getProductById() {
 
@@ -75,4 +88,108 @@ class ProductServiceApplicationTests {
         .jsonPath("$.path").isEqualTo("/product/" + productIdInvalid)
         .jsonPath("$.message").isEqualTo("Invalid productId: " + productIdInvalid);
   }
+
+  @Test
+  void getProductsByIds() {
+
+    client.get()
+      .uri("/product?productIds=1,13,2")
+      .accept(APPLICATION_JSON)
+      .exchange()
+      .expectStatus().isOk()
+      .expectHeader().contentType(APPLICATION_JSON)
+      .expectBody()
+        .jsonPath("$.length()").isEqualTo(2)
+        .jsonPath("$[0].productId").isEqualTo(1)
+        .jsonPath("$[1].productId").isEqualTo(2);
+  }
+
+  @Test
+  void getProductFromResponseCache() {
+
+    double hits = registry.get("response.cache.requests").tag("result", "hit").counter().count();
+    double servedBytes = registry.get("response.cache.served").counter().count();
+
+    byte[] first = getProductBody(7);
+    byte[] second = getProductBody(7);
+
+    assertArrayEquals(first, second);
+    assertEquals(hits + 1, registry.get("response.cache.requests").tag("result", "hit").counter().count());
+    assertEquals(servedBytes + second.length, registry.get("response.cache.served").counter().count());
+  }
+
+  @Test
+  void getProductNotModified() {
+
+    // A cached path, answered from the response cache, and one that is not
+    for (String uri : new String[] {"/product/8", "/product?productIds=8,9"}) {
+      String etag = client.get()
+        .uri(uri)
+        .accept(APPLICATION_JSON)
+        .exchange()
+        .expectStatus().isOk()
+        .expectBody().returnResult().getResponseHeaders().getETag();
+      assertNotNull(etag);
+
+      client.get()
+        .uri(uri)
+        .accept(APPLICATION_JSON)
+        .ifNoneMatch(etag)
+        .exchange()
+        .expectStatus().isNotModified()
+        .expectHeader().valueEquals(HttpHeaders.ETAG, etag)
+        .expectBody().isEmpty();
+
+      client.get()
+        .uri(uri)
+        .accept(APPLICATION_JSON)
+        .ifNoneMatch("\"other\"")
+        .exchange()
+        .expectStatus().isOk()
+        .expectHeader().valueEquals(HttpHeaders.ETAG, etag);
+    }
+  }
+
+  @Test
+  void getProductInvalidBudgetIgnored() {
+
+    // Budgets that are not positive are ignored, too large ones are capped instead of overflowing
+    for (String budget : new String[] {"0", "-1", "invalid", String.valueOf(Long.MAX_VALUE)}) {
+      client.get()
+        .uri("/product/1")
+        .header(Deadline.HEADER, budget)
+        .accept(APPLICATION_JSON)
+        .exchange()
+        .expectStatus().isOk()
+        .expectBody()
+          .jsonPath("$.productId").isEqualTo(1);
+    }
+  }
+
+  @Test
+  void readyAfterWarmup() {
+
+    assertEquals(1, registry.get("warmup.duration").timer().count());
+    assertEquals(1, registry.get("warmup.task").tag("task", "requests").tag("outcome", "success").timer().count());
+    assertEquals(1, registry.get("warmup.task").tag("task", "serializers").tag("outcome", "success").timer().count());
+    assertTrue(((DefaultSerializerProvider) smileCodecs.getObjectMapper().getSerializerProvider()).cachedSerializersCount() > 0);
+
+    client.get()
+      .uri("/actuator/health/readiness")
+      .accept(APPLICATION_JSON)
+      .exchange()
+      .expectStatus().isOk()
+      .expectBody()
+        .jsonPath("$.status").isEqualTo("UP");
+  }
+
+  private byte[] getProductBody(int productId) {
+    return client.get()
+      .uri("/product/" + productId)
+      .accept(APPLICATION_JSON)
+      .exchange()
+      .expectStatus().isOk()
+      .expectHeader().contentType(APPLICATION_JSON)
+      .expectBody().returnResult().getResponseBody();
+  }
 }
@@ -1,14 +1,20 @@
 package se.magnus.microservices.core.recommendation.services;
 
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 import se.magnus.api.core.recommendation.Recommendation;
 import se.magnus.api.core.recommendation.RecommendationService;
+import se.magnus.api.core.recommendation.RecommendationStats;
 import se.magnus.api.exceptions.InvalidInputException;
+import se.magnus.util.http.ResponseCache;
 import se.magnus.util.http.ServiceUtil;
 
 @RestController
@@ -16,32 +22,124 @@ public class RecommendationServiceImpl implements RecommendationService {
 
   private static final Logger LOG = LoggerFactory.getLogger(RecommendationServiceImpl.class);
 
+  private static final int MAX_LIMIT = 100;
+
   private final ServiceUtil serviceUtil;
+  private final RecommendationStore store;
+  private final ResponseCache responseCache;
 
   @Autowired
-  public RecommendationServiceImpl(ServiceUtil serviceUtil) {
+  public RecommendationServiceImpl(ServiceUtil serviceUtil, RecommendationStore store, ResponseCache responseCache) {
     this.serviceUtil = serviceUtil;
+    this.store = store;
+    this.responseCache = responseCache;
   }
 
   @Override
-  public List<Recommendation> getRecommendations(int productId) {
+  public Mono<Recommendation> createRecommendation(Recommendation body) {
+
+    if (body.getProductId() < 1) {
+      throw new InvalidInputException("Invalid productId: " + body.getProductId());
+    }
+
+    if (!store.add(new Recommendation(body.getProductId(), body.getRecommendationId(), body.getAuthor(), body.getRate(), body.getContent(), null))) {
+      throw new InvalidInputException("Duplicate key, Product Id: " + body.getProductId() + ", Recommendation Id:" + body.getRecommendationId());
+    }
+    responseCache.invalidate(body.getProductId());
+
+    LOG.debug("createRecommendation: created a recommendation entity: {}/{}", body.getProductId(), body.getRecommendationId());
+
+    return Mono.just(withServiceAddress(body));
+  }
+
+  @Override
+  public Flux<Recommendation> getRecommendations(int productId) {
 
     if (productId < 1) {
       throw new InvalidInputException("Invalid productId: " + productId);
     }
 
-    if (productId == 113) {
-      LOG.debug("No recommendations found for productId: {}", productId);
-      return new ArrayList<>();
+    return Flux.defer(() -> {
+      List<Recommendation> list = store.find(productId);
+      LOG.debug("/recommendation response size: {}", list.size());
+      return Flux.fromIterable(list).map(this::withServiceAddress);
+    });
+  }
+
+  @Override
+  public Flux<Recommendation> getTopRecommendations(int productId, int limit, String orderBy) {
+
+    if (productId < 1) {
+      throw new InvalidInputException("Invalid productId: " + productId);
+    }
+
+    if (limit < 1 || limit > MAX_LIMIT) {
+      throw new InvalidInputException("Invalid limit: " + limit + ", must be between 1 and " + MAX_LIMIT);
+    }
+
+    Comparator<Recommendation> order;
+    switch (orderBy) {
+      case "rate":
+        order = RecommendationStore.BY_RATE;
+        break;
+      case "recommendationId":
+        order = RecommendationStore.BY_RECOMMENDATION_ID;
+        break;
+      default:
+        throw new InvalidInputException("Invalid orderBy: " + orderBy + ", valid values are: rate, recommendationId");
+    }
+
+    return Flux.defer(() -> {
+      List<Recommendation> list = store.findTop(productId, limit, order);
+      LOG.debug("/recommendation response size: {}, limit: {}, orderBy: {}", list.size(), limit, orderBy);
+      return Flux.fromIterable(list).map(this::withServiceAddress);
+    });
+  }
+
+  @Override
+  public Flux<Recommendation> getRecommendationsForProducts(List<Integer> productIds) {
+
+    for (int productId : productIds) {
+      if (productId < 1) {
+        throw new InvalidInputException("Invalid productId: " + productId);
+      }
     }
 
-    List<Recommendation> list = new ArrayList<>();
-    list.add(new Recommendation(productId, 1, "Author 1", 1, "Content 1", serviceUtil.getServiceAddress()));
-    list.add(new Recommendation(productId, 2, "Author 2", 2, "Content 2", serviceUtil.getServiceAddress()));
-    list.add(new Recommendation(productId, 3, "Author 3", 3, "Content 3", serviceUtil.getServiceAddress()));
+    return Flux.defer(() -> {
+      List<Recommendation> list = new ArrayList<>();
+      for (int productId : new LinkedHashSet<>(productIds)) {
+        list.addAll(store.find(productId));
+      }
+      LOG.debug("/recommendation response size: {} for {} products", list.size(), productIds.size());
+      return Flux.fromIterable(list).map(this::withServiceAddress);
+    });
+  }
 
-    LOG.debug("/recommendation response size: {}", list.size());
+  @Override
+  public Mono<RecommendationStats> getRecommendationStats(int productId) {
+
+    if (productId < 1) {
+      throw new InvalidInputException("Invalid productId: " + productId);
+    }
+
+    return Mono.fromSupplier(() -> store.stats(productId, serviceUtil.getServiceAddress()));
+  }
+
+  @Override
+  public Mono<Void> deleteRecommendations(int productId) {
+
+    if (productId < 1) {
+      throw new InvalidInputException("Invalid productId: " + productId);
+    }
+
+    return Mono.fromRunnable(() -> {
+      int removed = store.removeAll(productId);
+      responseCache.invalidate(productId);
+      LOG.debug("deleteRecommendations: deleted {} recommendations of the product with productId: {}", removed, productId);
+    });
+  }
 
-    return list;
+  private Recommendation withServiceAddress(Recommendation r) {
+    return new Recommendation(r.getProductId(), r.getRecommendationId(), r.getAuthor(), r.getRate(), r.getContent(), serviceUtil.getServiceAddress());
   }
 }
@@ -0,0 +1,151 @@
+package se.magnus.microservices.core.recommendation.services;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import org.springframework.stereotype.Component;
+import se.magnus.api.core.recommendation.Recommendation;
+import se.magnus.api.core.recommendation.RecommendationStats;
+
+/**
+ * In-memory store of the recommendations, per product together with the count, sum and histogram of their
+ * rates. The aggregates are updated with every change, so reading them never walks the recommendations.
+ *
+ * <p>Products that were never changed read as three demo recommendations, except product 113, which has none,
+ * as the service returned before it had a store. A product starts empty when it is first changed, the demo
+ * recommendations are never stored. Only changed products are held in the store, so reads of arbitrary
+ * productIds do not grow it.
+ */
+@Component
+class RecommendationStore {
+
+  static final Comparator<Recommendation> BY_RECOMMENDATION_ID = Comparator.comparingInt(Recommendation::getRecommendationId);
+  static final Comparator<Recommendation> BY_RATE =
+    Comparator.comparingInt(Recommendation::getRate).reversed().thenComparing(BY_RECOMMENDATION_ID);
+
+  private static final int PRODUCT_ID_WITHOUT_RECOMMENDATIONS = 113;
+
+  private final ConcurrentMap<Integer, ProductRecommendations> products = new ConcurrentHashMap<>();
+
+  /**
+   * @return false if the product already has a recommendation with the recommendationId
+   */
+  boolean add(Recommendation recommendation) {
+    return productOf(recommendation.getProductId()).add(recommendation);
+  }
+
+  /**
+   * @return the number of removed recommendations
+   */
+  int removeAll(int productId) {
+    return productOf(productId).removeAll();
+  }
+
+  /**
+   * @return the recommendations of the product ordered by recommendationId, without service address
+   */
+  List<Recommendation> find(int productId) {
+    return existingOrDemo(productId).list();
+  }
+
+  /**
+   * @return the first limit recommendations of the product in the given order, without service address
+   */
+  List<Recommendation> findTop(int productId, int limit, Comparator<Recommendation> order) {
+    return existingOrDemo(productId).top(limit, order);
+  }
+
+  RecommendationStats stats(int productId, String serviceAddress) {
+    return existingOrDemo(productId).stats(productId, serviceAddress);
+  }
+
+  private ProductRecommendations productOf(int productId) {
+    return products.computeIfAbsent(productId, k -> new ProductRecommendations());
+  }
+
+  private ProductRecommendations existingOrDemo(int productId) {
+    ProductRecommendations recommendations = products.get(productId);
+    return (recommendations != null) ? recommendations : demo(productId);
+  }
+
+  private static ProductRecommendations demo(int productId) {
+    ProductRecommendations recommendations = new ProductRecommendations();
+    if (productId != PRODUCT_ID_WITHOUT_RECOMMENDATIONS) {
+      recommendations.add(new Recommendation(productId, 1, "Author 1", 1, "Content 1", null));
+      recommendations.add(new Recommendation(productId, 2, "Author 2", 2, "Content 2", null));
+      recommendations.add(new Recommendation(productId, 3, "Author 3", 3, "Content 3", null));
+    }
+    return recommendations;
+  }
+
+  private static final class ProductRecommendations {
+
+    private final List<Recommendation> recommendations = new ArrayList<>();
+    private final Map<Integer, Integer> histogram = new TreeMap<>();
+    private long sum;
+
+    synchronized boolean add(Recommendation recommendation) {
+      int index = 0;
+      while (index < recommendations.size()
+        && recommendations.get(index).getRecommendationId() < recommendation.getRecommendationId()) {
+        index++;
+      }
+      if (index < recommendations.size()
+        && recommendations.get(index).getRecommendationId() == recommendation.getRecommendationId()) {
+        return false;
+      }
+
+      recommendations.add(index, recommendation);
+      sum += recommendation.getRate();
+      histogram.merge(recommendation.getRate(), 1, Integer::sum);
+      return true;
+    }
+
+    synchronized int removeAll() {
+      int removed = recommendations.size();
+      recommendations.clear();
+      histogram.clear();
+      sum = 0;
+      return removed;
+    }
+
+    synchronized List<Recommendation> list() {
+      return new ArrayList<>(recommendations);
+    }
+
+    /**
+     * Bounded selection: a heap of at most limit elements, with the one that would be dropped first on top,
+     * so it costs O(n log limit) and never copies or sorts all the recommendations.
+     */
+    synchronized List<Recommendation> top(int limit, Comparator<Recommendation> order) {
+      if (order == BY_RECOMMENDATION_ID) {
+        return new ArrayList<>(recommendations.subList(0, Math.min(limit, recommendations.size())));
+      }
+
+      PriorityQueue<Recommendation> heap = new PriorityQueue<>(Math.min(limit, recommendations.size()) + 1, order.reversed());
+      for (Recommendation recommendation : recommendations) {
+        if (heap.size() < limit) {
+          heap.add(recommendation);
+        } else if (order.compare(recommendation, heap.peek()) < 0) {
+          heap.poll();
+          heap.add(recommendation);
+        }
+      }
+
+      List<Recommendation> top = new ArrayList<>(heap);
+      top.sort(order);
+      return top;
+    }
+
+    synchronized RecommendationStats stats(int productId, String serviceAddress) {
+      int count = recommendations.size();
+      double mean = (count == 0) ? 0 : (double) sum / count;
+      return new RecommendationStats(productId, count, sum, mean, new TreeMap<>(histogram), serviceAddress);
+    }
+  }
+}
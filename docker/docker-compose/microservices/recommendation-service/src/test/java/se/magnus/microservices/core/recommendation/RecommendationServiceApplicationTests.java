@@ -9,6 +9,7 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.web.reactive.server.WebTestClient;
+import se.magnus.api.core.recommendation.Recommendation;
 
 @SpringBootTest(webEnvironment = RANDOM_PORT)
 class RecommendationServiceApplicationTests {
@@ -89,4 +90,131 @@ class RecommendationServiceApplicationTests {
         .jsonPath("$.path").isEqualTo("/recommendation")
         .jsonPath("$.message").isEqualTo("Invalid productId: " + productIdInvalid);
   }
+
+  @Test
+  void getRecommendationsByProductIds() {
+
+    client.get()
+      .uri("/recommendation?productIds=1,113,2")
+      .accept(APPLICATION_JSON)
+      .exchange()
+      .expectStatus().isOk()
+      .expectHeader().contentType(APPLICATION_JSON)
+      .expectBody()
+        .jsonPath("$.length()").isEqualTo(6)
+        .jsonPath("$[0].productId").isEqualTo(1)
+        .jsonPath("$[3].productId").isEqualTo(2);
+  }
+
+  @Test
+  void getRecommendationStats() {
+
+    client.get()
+      .uri("/recommendation/stats?productId=1")
+      .accept(APPLICATION_JSON)
+      .exchange()
+      .expectStatus().isOk()
+      .expectHeader().contentType(APPLICATION_JSON)
+      .expectBody()
+        .jsonPath("$.productId").isEqualTo(1)
+        .jsonPath("$.count").isEqualTo(3)
+        .jsonPath("$.sum").isEqualTo(6)
+        .jsonPath("$.mean").isEqualTo(2.0)
+        .jsonPath("$.histogram.3").isEqualTo(1);
+  }
+
+  @Test
+  void recommendationStatsFollowChanges() {
+
+    int productId = 600;
+
+    // A changed product holds only what was posted, also recommendationIds the demo recommendations use
+    postRecommendation(productId, 1, 1);
+    postRecommendation(productId, 4, 5);
+
+    client.get()
+      .uri("/recommendation/stats?productId=" + productId)
+      .accept(APPLICATION_JSON)
+      .exchange()
+      .expectStatus().isOk()
+      .expectBody()
+        .jsonPath("$.count").isEqualTo(2)
+        .jsonPath("$.sum").isEqualTo(6)
+        .jsonPath("$.mean").isEqualTo(3.0)
+        .jsonPath("$.histogram.1").isEqualTo(1)
+        .jsonPath("$.histogram.5").isEqualTo(1);
+
+    client.delete()
+      .uri("/recommendation?productId=" + productId)
+      .exchange()
+      .expectStatus().isOk();
+
+    client.get()
+      .uri("/recommendation/stats?productId=" + productId)
+      .accept(APPLICATION_JSON)
+      .exchange()
+      .expectStatus().isOk()
+      .expectBody()
+        .jsonPath("$.count").isEqualTo(0)
+        .jsonPath("$.mean").isEqualTo(0.0)
+        .jsonPath("$.histogram").isEmpty();
+  }
+
+  @Test
+  void getTopRecommendationsByRate() {
+
+    int productId = 700;
+
+    postRecommendation(productId, 1, 1);
+    postRecommendation(productId, 2, 2);
+    postRecommendation(productId, 3, 3);
+    postRecommendation(productId, 4, 5);
+
+    client.get()
+      .uri("/recommendation?productId=" + productId + "&limit=2&orderBy=rate")
+      .accept(APPLICATION_JSON)
+      .exchange()
+      .expectStatus().isOk()
+      .expectHeader().contentType(APPLICATION_JSON)
+      .expectBody()
+        .jsonPath("$.length()").isEqualTo(2)
+        .jsonPath("$[0].recommendationId").isEqualTo(4)
+        .jsonPath("$[0].rate").isEqualTo(5)
+        .jsonPath("$[1].recommendationId").isEqualTo(3)
+        .jsonPath("$[1].rate").isEqualTo(3);
+
+    client.get()
+      .uri("/recommendation?productId=" + productId + "&limit=2")
+      .accept(APPLICATION_JSON)
+      .exchange()
+      .expectStatus().isOk()
+      .expectBody()
+        .jsonPath("$.length()").isEqualTo(2)
+        .jsonPath("$[0].recommendationId").isEqualTo(1)
+        .jsonPath("$[1].recommendationId").isEqualTo(2);
+  }
+
+  @Test
+  void getTopRecommendationsInvalidOrderBy() {
+
+    client.get()
+      .uri("/recommendation?productId=1&limit=2&orderBy=author")
+      .accept(APPLICATION_JSON)
+      .exchange()
+      .expectStatus().isEqualTo(UNPROCESSABLE_ENTITY)
+      .expectHeader().contentType(APPLICATION_JSON)
+      .expectBody()
+        .jsonPath("$.path").isEqualTo("/recommendation")
+        .jsonPath("$.message").isEqualTo("Invalid orderBy: author, valid values are: rate, recommendationId");
+  }
+
+  private void postRecommendation(int productId, int recommendationId, int rate) {
+    client.post()
+      .uri("/recommendation")
+      .contentType(APPLICATION_JSON)
+      .bodyValue(new Recommendation(productId, recommendationId, "author", rate, "content", null))
+      .accept(APPLICATION_JSON)
+      .exchange()
+      .expectStatus().isOk();
+  }
 }
@@ -0,0 +1,111 @@
+package se.magnus.microservices.core.review.services;
+
+/**
+ * Open addressing hash map from int to int with linear probing, two int arrays and no boxing.
+ *
+ * <p>Key 0 marks a free slot and can not be used. Not thread safe.
+ */
+final class IntIntMap {
+
+  private static final int FREE = 0;
+
+  private int[] keys;
+  private int[] values;
+  private int mask;
+  private int size;
+
+  IntIntMap(int expectedSize) {
+    int capacity = Integer.highestOneBit(Math.max(expectedSize, 4) * 2 - 1) << 1;
+    keys = new int[capacity];
+    values = new int[capacity];
+    mask = capacity - 1;
+  }
+
+  int size() {
+    return size;
+  }
+
+  int get(int key, int missingValue) {
+    for (int i = slot(key); ; i = (i + 1) & mask) {
+      int k = keys[i];
+      if (k == key) {
+        return values[i];
+      }
+      if (k == FREE) {
+        return missingValue;
+      }
+    }
+  }
+
+  void put(int key, int value) {
+    if (key == FREE) {
+      throw new IllegalArgumentException("Key " + FREE + " is not supported");
+    }
+
+    int i = slot(key);
+    while (keys[i] != FREE) {
+      if (keys[i] == key) {
+        values[i] = value;
+        return;
+      }
+      i = (i + 1) & mask;
+    }
+    keys[i] = key;
+    values[i] = value;
+
+    // Keep the load factor at or below 0.75, probe sequences grow quickly above that
+    if (++size * 4 > keys.length * 3) {
+      rehash(keys.length * 2);
+    }
+  }
+
+  int remove(int key, int missingValue) {
+    int i = slot(key);
+    while (keys[i] != key) {
+      if (keys[i] == FREE) {
+        return missingValue;
+      }
+      i = (i + 1) & mask;
+    }
+    int removed = values[i];
+
+    // Shift the following entries of the probe sequence back instead of leaving a tombstone,
+    // an entry is moved into the gap unless its home slot lies cyclically in (gap, current]
+    int gap = i;
+    for (int j = (i + 1) & mask; keys[j] != FREE; j = (j + 1) & mask) {
+      int home = slot(keys[j]);
+      boolean stays = (gap <= j) ? (gap < home && home <= j) : (gap < home || home <= j);
+      if (!stays) {
+        keys[gap] = keys[j];
+        values[gap] = values[j];
+        gap = j;
+      }
+    }
+    keys[gap] = FREE;
+    size--;
+    return removed;
+  }
+
+  private int slot(int key) {
+    int h = key * 0x9E3779B9;
+    return (h ^ (h >>> 16)) & mask;
+  }
+
+  private void rehash(int capacity) {
+    int[] oldKeys = keys;
+    int[] oldValues = values;
+    keys = new int[capacity];
+    values = new int[capacity];
+    mask = capacity - 1;
+    for (int i = 0; i < oldKeys.length; i++) {
+      if (oldKeys[i] != FREE) {
+        int j = slot(oldKeys[i]);
+        while (keys[j] != FREE) {
+          j = (j + 1) & mask;
+        }
+        keys[j] = oldKeys[i];
+        values[j] = oldValues[i];
+      }
+    }
+  }
+}
@@ -0,0 +1,35 @@
+package se.magnus.microservices.core.review.services;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.util.Base64;
+import se.magnus.api.exceptions.InvalidInputException;
+
+/**
+ * Continuation token of a review page, the productId and the last reviewId of the page, URL-safe Base64 encoded.
+ * Clients must treat it as opaque, so the format can change without changing the API.
+ */
+final class ReviewPageToken {
+
+  private ReviewPageToken() {}
+
+  static String encode(int productId, int lastReviewId) {
+    String token = productId + ":" + lastReviewId;
+    return Base64.getUrlEncoder().withoutPadding().encodeToString(token.getBytes(UTF_8));
+  }
+
+  /**
+   * @return the reviewId after which the next page starts
+   */
+  static int decode(String pageToken, int productId) {
+    try {
+      String[] parts = new String(Base64.getUrlDecoder().decode(pageToken), UTF_8).split(":");
+      if (parts.length == 2 && Integer.parseInt(parts[0]) == productId) {
+        return Integer.parseInt(parts[1]);
+      }
+    } catch (IllegalArgumentException e) {
+      // Not Base64 or not numbers, reported below as any other invalid token
+    }
+    throw new InvalidInputException("Invalid pageToken: " + pageToken);
+  }
+}
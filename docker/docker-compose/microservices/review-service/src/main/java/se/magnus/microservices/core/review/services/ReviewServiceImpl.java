@@ -1,14 +1,19 @@
 package se.magnus.microservices.core.review.services;
 
 import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 import se.magnus.api.core.review.Review;
+import se.magnus.api.core.review.ReviewPage;
 import se.magnus.api.core.review.ReviewService;
 import se.magnus.api.exceptions.InvalidInputException;
+import se.magnus.util.http.ResponseCache;
 import se.magnus.util.http.ServiceUtil;
 
 @RestController
@@ -16,32 +21,121 @@ public class ReviewServiceImpl implements ReviewService {
 
   private static final Logger LOG = LoggerFactory.getLogger(ReviewServiceImpl.class);
 
+  private static final int MAX_PAGE_SIZE = 100;
+
+  // Reviews are read from the store in chunks of this size, the store is unlocked between chunks
+  private static final int CHUNK_SIZE = 256;
+
   private final ServiceUtil serviceUtil;
+  private final ReviewStore store;
+  private final ResponseCache responseCache;
 
   @Autowired
-  public ReviewServiceImpl(ServiceUtil serviceUtil) {
+  public ReviewServiceImpl(ServiceUtil serviceUtil, ReviewStore store, ResponseCache responseCache) {
     this.serviceUtil = serviceUtil;
+    this.store = store;
+    this.responseCache = responseCache;
+  }
+
+  @Override
+  public Mono<Review> createReview(Review body) {
+
+    if (body.getProductId() < 1) {
+      throw new InvalidInputException("Invalid productId: " + body.getProductId());
+    }
+
+    if (body.getReviewId() < 1) {
+      throw new InvalidInputException("Invalid reviewId: " + body.getReviewId());
+    }
+
+    if (!store.add(body.getProductId(), body.getReviewId(), body.getAuthor(), body.getSubject(), body.getContent())) {
+      throw new InvalidInputException("Duplicate key, Product Id: " + body.getProductId() + ", Review Id:" + body.getReviewId());
+    }
+    responseCache.invalidate(body.getProductId());
+
+    LOG.debug("createReview: created a review entity: {}/{}", body.getProductId(), body.getReviewId());
+
+    return Mono.just(new Review(body.getProductId(), body.getReviewId(), body.getAuthor(), body.getSubject(),
+      body.getContent(), serviceUtil.getServiceAddress()));
+  }
+
+  @Override
+  public Flux<Review> getReviews(int productId) {
+
+    if (productId < 1) {
+      throw new InvalidInputException("Invalid productId: " + productId);
+    }
+
+    return streamReviews(productId);
   }
 
   @Override
-  public List<Review> getReviews(int productId) {
+  public Mono<ReviewPage> getReviewPage(int productId, int pageSize, String pageToken) {
 
     if (productId < 1) {
       throw new InvalidInputException("Invalid productId: " + productId);
     }
 
-    if (productId == 213) {
-      LOG.debug("No reviews found for productId: {}", productId);
-      return new ArrayList<>();
+    if (pageSize < 1 || pageSize > MAX_PAGE_SIZE) {
+      throw new InvalidInputException("Invalid pageSize: " + pageSize + ", must be between 1 and " + MAX_PAGE_SIZE);
+    }
+
+    int afterReviewId = (pageToken == null) ? 0 : ReviewPageToken.decode(pageToken, productId);
+
+    // The reviews are ordered by reviewId, one review more than the page size tells if there is a next page
+    return Mono.fromSupplier(() -> {
+      List<Review> reviews = store.find(productId, afterReviewId, pageSize + 1, serviceUtil.getServiceAddress());
+      if (reviews.size() <= pageSize) {
+        return new ReviewPage(reviews, null);
+      }
+      List<Review> page = new ArrayList<>(reviews.subList(0, pageSize));
+      return new ReviewPage(page, ReviewPageToken.encode(productId, page.get(pageSize - 1).getReviewId()));
+    });
+  }
+
+  @Override
+  public Flux<Review> getReviewsForProducts(List<Integer> productIds) {
+
+    for (int productId : productIds) {
+      if (productId < 1) {
+        throw new InvalidInputException("Invalid productId: " + productId);
+      }
     }
 
-    List<Review> list = new ArrayList<>();
-    list.add(new Review(productId, 1, "Author 1", "Subject 1", "Content 1", serviceUtil.getServiceAddress()));
-    list.add(new Review(productId, 2, "Author 2", "Subject 2", "Content 2", serviceUtil.getServiceAddress()));
-    list.add(new Review(productId, 3, "Author 3", "Subject 3", "Content 3", serviceUtil.getServiceAddress()));
+    return Flux.fromIterable(new LinkedHashSet<>(productIds)).concatMap(this::streamReviews);
+  }
 
-    LOG.debug("/reviews response size: {}", list.size());
+  /**
+   * Reads the reviews of a product a chunk at a time as they are requested, so neither the heap nor the time
+   * writers wait for the store grows with the number of reviews. A chunk starts after the last reviewId of the
+   * previous one, reviews added or removed in between are seen as by a sequence of page requests.
+   */
+  private Flux<Review> streamReviews(int productId) {
+    return Flux.<List<Review>, Integer>generate(() -> 0, (afterReviewId, sink) -> {
+      List<Review> chunk = store.find(productId, afterReviewId, CHUNK_SIZE, serviceUtil.getServiceAddress());
+      if (chunk.isEmpty()) {
+        sink.complete();
+        return afterReviewId;
+      }
+      sink.next(chunk);
+      if (chunk.size() < CHUNK_SIZE) {
+        sink.complete();
+      }
+      return chunk.get(chunk.size() - 1).getReviewId();
+    }).concatMapIterable(chunk -> chunk);
+  }
+
+  @Override
+  public Mono<Void> deleteReviews(int productId) {
+
+    if (productId < 1) {
+      throw new InvalidInputException("Invalid productId: " + productId);
+    }
 
-    return list;
+    return Mono.fromRunnable(() -> {
+      int removed = store.removeAll(productId);
+      responseCache.invalidate(productId);
+      LOG.debug("deleteReviews: deleted {} reviews of the product with productId: {}", removed, productId);
+    });
   }
 }
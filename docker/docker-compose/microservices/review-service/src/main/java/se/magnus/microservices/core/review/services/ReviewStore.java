@@ -0,0 +1,366 @@
+package se.magnus.microservices.core.review.services;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+import se.magnus.api.core.review.Review;
+
+/**
+ * In-memory store of all reviews, indexed by productId.
+ *
+ * <p>A review is a record number into parallel int arrays: productId, reviewId and the offset of its texts in
+ * a shared UTF-8 byte arena, where author, subject and content are stored after each other, each prefixed by
+ * its varint length. Each product has an index, an array of its record numbers ordered by reviewId, found
+ * through an {@link IntIntMap}, so the reviews after a reviewId are found by binary search, as fast on deep
+ * pages as on the first one. That is 16 bytes plus the UTF-8 texts per review, and a lookup allocates
+ * nothing but the returned reviews.
+ *
+ * <p>The store is loaded from an NDJSON snapshot of reviews at startup and then updated one review at a time.
+ * Record numbers of deleted reviews are reused, their texts stay in the arena until more than half of it is
+ * garbage, then the arena is compacted. Reads share a lock, updates are exclusive.
+ */
+@Component
+class ReviewStore {
+
+  private static final Logger LOG = LoggerFactory.getLogger(ReviewStore.class);
+
+  private static final int NONE = -1;
+
+  private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+  private int[] productIds = new int[1024];
+  private int[] reviewIds = new int[1024];
+  private int[] textOffsets = new int[1024];
+  private int recordCount;
+  private int[] freeRecords = new int[16];
+  private int freeRecordCount;
+
+  // productId -> index, an index holds the record numbers of a product ordered by reviewId
+  private final IntIntMap productIndexes = new IntIntMap(1024);
+  private int[][] indexRecords = new int[1024][];
+  private int[] indexSizes = new int[1024];
+  private int indexCount;
+  private int[] freeIndexes = new int[16];
+  private int freeIndexCount;
+  private int reviewCount;
+
+  private byte[] arena = new byte[64 * 1024];
+  private int arenaSize;
+  private int arenaGarbage;
+
+  @Autowired
+  ReviewStore(
+    ObjectMapper mapper,
+    MeterRegistry registry,
+    @Value("${app.review-store.snapshot:}") Resource snapshot) {
+
+    if (snapshot != null && snapshot.exists()) {
+      try (InputStream in = snapshot.getInputStream()) {
+        long start = System.nanoTime();
+        int loaded = load(mapper, in);
+        LOG.info("Loaded {} reviews of {} products from {} in {} ms, arena size: {} bytes",
+          loaded, productIndexes.size(), snapshot, (System.nanoTime() - start) / 1_000_000, arenaSize);
+      } catch (IOException e) {
+        throw new UncheckedIOException("Failed to load the review snapshot from " + snapshot, e);
+      }
+    } else {
+      LOG.warn("No review snapshot found at {}, starting with an empty review store", snapshot);
+    }
+
+    Gauge.builder("review.store.reviews", this, s -> s.reviewCount).register(registry);
+    Gauge.builder("review.store.products", this, s -> s.productIndexes.size()).register(registry);
+    Gauge.builder("review.store.arena", this, s -> s.arenaSize).baseUnit("bytes").register(registry);
+  }
+
+  /**
+   * Adds the reviews of an NDJSON stream, one review per line; duplicates and invalid ids are skipped.
+   *
+   * @return the number of reviews added
+   */
+  int load(ObjectMapper mapper, InputStream in) throws IOException {
+    int added = 0;
+    try (MappingIterator<Review> reviews = mapper.readerFor(Review.class).readValues(in)) {
+      while (reviews.hasNextValue()) {
+        Review review = reviews.nextValue();
+        if (review.getProductId() < 1 || review.getReviewId() < 1) {
+          LOG.warn("Skipped review with invalid ids, productId: {}, reviewId: {}", review.getProductId(), review.getReviewId());
+        } else if (add(review.getProductId(), review.getReviewId(), review.getAuthor(), review.getSubject(), review.getContent())) {
+          added++;
+        } else {
+          LOG.warn("Skipped duplicate review, productId: {}, reviewId: {}", review.getProductId(), review.getReviewId());
+        }
+      }
+    }
+    return added;
+  }
+
+  /**
+   * @return false if the product already has a review with the reviewId
+   * @throws IllegalArgumentException if productId or reviewId is less than 1
+   */
+  boolean add(int productId, int reviewId, String author, String subject, String content) {
+    if (productId < 1 || reviewId < 1) {
+      throw new IllegalArgumentException("Invalid ids, productId: " + productId + ", reviewId: " + reviewId);
+    }
+
+    lock.writeLock().lock();
+    try {
+      int index = productIndexes.get(productId, NONE);
+      if (index == NONE) {
+        index = allocateIndex();
+        productIndexes.put(productId, index);
+      }
+
+      // The snapshot is usually ordered, so the new record mostly goes last and nothing is moved
+      int position = firstAfter(index, reviewId - 1);
+      int size = indexSizes[index];
+      int[] records = indexRecords[index];
+      if (position < size && reviewIds[records[position]] == reviewId) {
+        return false;
+      }
+
+      int record = allocateRecord();
+      productIds[record] = productId;
+      reviewIds[record] = reviewId;
+      textOffsets[record] = appendTexts(author, subject, content);
+
+      if (size == records.length) {
+        records = indexRecords[index] = Arrays.copyOf(records, size * 2);
+      }
+      System.arraycopy(records, position, records, position + 1, size - position);
+      records[position] = record;
+      indexSizes[index] = size + 1;
+      reviewCount++;
+      return true;
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * @return the number of removed reviews
+   */
+  int removeAll(int productId) {
+    lock.writeLock().lock();
+    try {
+      int index = productIndexes.remove(productId, NONE);
+      if (index == NONE) {
+        return 0;
+      }
+
+      int removed = indexSizes[index];
+      int[] records = indexRecords[index];
+      for (int i = 0; i < removed; i++) {
+        arenaGarbage += textsLength(textOffsets[records[i]]);
+        freeRecords = push(freeRecords, freeRecordCount++, records[i]);
+      }
+      indexRecords[index] = null;
+      indexSizes[index] = 0;
+      freeIndexes = push(freeIndexes, freeIndexCount++, index);
+      reviewCount -= removed;
+
+      if (arenaGarbage > arenaSize / 2) {
+        compactArena();
+      }
+      return removed;
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * @return at most limit reviews of the product with a reviewId greater than afterReviewId, ordered by reviewId
+   */
+  List<Review> find(int productId, int afterReviewId, int limit, String serviceAddress) {
+    lock.readLock().lock();
+    try {
+      int index = productIndexes.get(productId, NONE);
+      if (index == NONE) {
+        return new ArrayList<>();
+      }
+
+      int from = firstAfter(index, afterReviewId);
+      int to = (int) Math.min(indexSizes[index], (long) from + limit);
+      List<Review> reviews = new ArrayList<>(Math.max(to - from, 0));
+      for (int i = from; i < to; i++) {
+        reviews.add(toReview(indexRecords[index][i], serviceAddress));
+      }
+      return reviews;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  int size() {
+    lock.readLock().lock();
+    try {
+      return reviewCount;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  private Review toReview(int record, String serviceAddress) {
+    int[] position = {textOffsets[record]};
+    String author = readText(position);
+    String subject = readText(position);
+    String content = readText(position);
+    return new Review(productIds[record], reviewIds[record], author, subject, content, serviceAddress);
+  }
+
+  /**
+   * @return the position in the index of the first record with a reviewId greater than afterReviewId,
+   *     or the size of the index if there is none
+   */
+  private int firstAfter(int index, int afterReviewId) {
+    int[] records = indexRecords[index];
+    int low = 0;
+    int high = indexSizes[index];
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+      if (reviewIds[records[middle]] <= afterReviewId) {
+        low = middle + 1;
+      } else {
+        high = middle;
+      }
+    }
+    return low;
+  }
+
+  private int allocateRecord() {
+    if (freeRecordCount > 0) {
+      return freeRecords[--freeRecordCount];
+    }
+    if (recordCount == productIds.length) {
+      int capacity = productIds.length * 2;
+      productIds = Arrays.copyOf(productIds, capacity);
+      reviewIds = Arrays.copyOf(reviewIds, capacity);
+      textOffsets = Arrays.copyOf(textOffsets, capacity);
+    }
+    return recordCount++;
+  }
+
+  private int allocateIndex() {
+    int index;
+    if (freeIndexCount > 0) {
+      index = freeIndexes[--freeIndexCount];
+    } else {
+      if (indexCount == indexRecords.length) {
+        indexRecords = Arrays.copyOf(indexRecords, indexCount * 2);
+        indexSizes = Arrays.copyOf(indexSizes, indexCount * 2);
+      }
+      index = indexCount++;
+    }
+    indexRecords[index] = new int[4];
+    indexSizes[index] = 0;
+    return index;
+  }
+
+  /**
+   * @return the stack, grown if the value did not fit
+   */
+  private static int[] push(int[] stack, int size, int value) {
+    if (size == stack.length) {
+      stack = Arrays.copyOf(stack, size * 2);
+    }
+    stack[size] = value;
+    return stack;
+  }
+
+  private int appendTexts(String... texts) {
+    int offset = arenaSize;
+    for (String text : texts) {
+      byte[] bytes = (text == null) ? new byte[0] : text.getBytes(UTF_8);
+      ensureArenaCapacity(5 + bytes.length);
+      writeVarInt(bytes.length);
+      System.arraycopy(bytes, 0, arena, arenaSize, bytes.length);
+      arenaSize += bytes.length;
+    }
+    return offset;
+  }
+
+  private void ensureArenaCapacity(int needed) {
+    if (arenaSize + needed > arena.length) {
+      arena = Arrays.copyOf(arena, Math.max(arena.length * 2, arenaSize + needed));
+    }
+  }
+
+  private void writeVarInt(int value) {
+    while ((value & ~0x7F) != 0) {
+      arena[arenaSize++] = (byte) ((value & 0x7F) | 0x80);
+      value >>>= 7;
+    }
+    arena[arenaSize++] = (byte) value;
+  }
+
+  /**
+   * Reads the text at position[0] and moves the position past it.
+   */
+  private String readText(int[] position) {
+    int length = readVarInt(position);
+    String text = new String(arena, position[0], length, UTF_8);
+    position[0] += length;
+    return text;
+  }
+
+  private int textsLength(int offset) {
+    int[] position = {offset};
+    for (int i = 0; i < 3; i++) {
+      int length = readVarInt(position);
+      position[0] += length;
+    }
+    return position[0] - offset;
+  }
+
+  private int readVarInt(int[] position) {
+    int value = 0;
+    int shift = 0;
+    byte b;
+    do {
+      b = arena[position[0]++];
+      value |= (b & 0x7F) << shift;
+      shift += 7;
+    } while ((b & 0x80) != 0);
+    return value;
+  }
+
+  /**
+   * Copies the texts of the live reviews to a new arena, sized for them with room to grow.
+   */
+  private void compactArena() {
+    int liveSize = arenaSize - arenaGarbage;
+    byte[] compacted = new byte[Math.max(64 * 1024, liveSize + liveSize / 2)];
+    int size = 0;
+
+    for (int index = 0; index < indexCount; index++) {
+      for (int i = 0; i < indexSizes[index]; i++) {
+        int r = indexRecords[index][i];
+        int length = textsLength(textOffsets[r]);
+        System.arraycopy(arena, textOffsets[r], compacted, size, length);
+        textOffsets[r] = size;
+        size += length;
+      }
+    }
+
+    LOG.debug("Compacted the review arena from {} to {} bytes", arenaSize, size);
+    arena = compacted;
+    arenaSize = size;
+    arenaGarbage = 0;
+  }
+}
@@ -1,20 +1,37 @@
 package se.magnus.microservices.core.review;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
 import static org.springframework.http.HttpStatus.BAD_REQUEST;
 import static org.springframework.http.HttpStatus.UNPROCESSABLE_ENTITY;
 import static org.springframework.http.MediaType.APPLICATION_JSON;
+import static org.springframework.http.MediaType.APPLICATION_NDJSON;
+import static se.magnus.util.http.SmileCodecCustomizer.APPLICATION_SMILE;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.netty.http.client.HttpClient;
+import reactor.test.StepVerifier;
+import se.magnus.api.core.review.Review;
+import se.magnus.api.core.review.ReviewPage;
 
 @SpringBootTest(webEnvironment = RANDOM_PORT)
 class ReviewServiceApplicationTests {
 
   @Autowired private WebTestClient client;
 
+  @Autowired private MeterRegistry registry;
+
+  @LocalServerPort private int port;
+
   @Test
   void getReviewsByProductId() {
 
@@ -89,4 +106,236 @@ class ReviewServiceApplicationTests {
         .jsonPath("$.path").isEqualTo("/review")
         .jsonPath("$.message").isEqualTo("Invalid productId: " + productIdInvalid);
   }
+
+  @Test
+  void getReviewsByProductIds() {
+
+    client.get()
+      .uri("/review?productIds=1,213,2")
+      .accept(APPLICATION_JSON)
+      .exchange()
+      .expectStatus().isOk()
+      .expectHeader().contentType(APPLICATION_JSON)
+      .expectBody()
+        .jsonPath("$.length()").isEqualTo(6)
+        .jsonPath("$[0].productId").isEqualTo(1)
+        .jsonPath("$[3].productId").isEqualTo(2);
+  }
+
+  @Test
+  void getReviewPages() {
+
+    ReviewPage firstPage = client.get()
+      .uri("/review/page?productId=1&pageSize=2")
+      .accept(APPLICATION_JSON)
+      .exchange()
+      .expectStatus().isOk()
+      .expectHeader().contentType(APPLICATION_JSON)
+      .expectBody(ReviewPage.class)
+      .returnResult()
+      .getResponseBody();
+
+    assertEquals(2, firstPage.getReviews().size());
+    assertNotNull(firstPage.getNextPageToken());
+
+    client.get()
+      .uri("/review/page?productId=1&pageSize=2&pageToken=" + firstPage.getNextPageToken())
+      .accept(APPLICATION_JSON)
+      .exchange()
+      .expectStatus().isOk()
+      .expectHeader().contentType(APPLICATION_JSON)
+      .expectBody()
+        .jsonPath("$.reviews.length()").isEqualTo(1)
+        .jsonPath("$.reviews[0].reviewId").isEqualTo(3)
+        .jsonPath("$.nextPageToken").isEmpty();
+  }
+
+  @Test
+  void getReviewPageInvalidToken() {
+
+    client.get()
+      .uri("/review/page?productId=1&pageToken=no-token")
+      .accept(APPLICATION_JSON)
+      .exchange()
+      .expectStatus().isEqualTo(UNPROCESSABLE_ENTITY)
+      .expectHeader().contentType(APPLICATION_JSON)
+      .expectBody()
+        .jsonPath("$.path").isEqualTo("/review/page")
+        .jsonPath("$.message").isEqualTo("Invalid pageToken: no-token");
+  }
+
+  @Test
+  void getReviewsAsStream() {
+
+    client.get()
+      .uri("/review?productId=1")
+      .accept(APPLICATION_NDJSON)
+      .exchange()
+      .expectStatus().isOk()
+      .expectHeader().contentTypeCompatibleWith(APPLICATION_NDJSON)
+      .returnResult(Review.class)
+      .getResponseBody()
+      .as(StepVerifier::create)
+      .expectNextCount(3)
+      .verifyComplete();
+  }
+
+  @Test
+  void getReviewsAsSmile() {
+
+    for (int i = 0; i < 2; i++) {
+      client.get()
+        .uri("/review?productId=2")
+        .accept(APPLICATION_SMILE)
+        .exchange()
+        .expectStatus().isOk()
+        .expectHeader().contentType(APPLICATION_SMILE)
+        .expectBodyList(Review.class)
+          .hasSize(3)
+          .value(reviews -> assertEquals(2, reviews.get(0).getProductId()));
+    }
+  }
+
+  @Test
+  void getReviewsAsSmileErrorIsJson() {
+
+    client.get()
+      .uri("/review?productId=-1")
+      .accept(APPLICATION_SMILE)
+      .exchange()
+      .expectStatus().isEqualTo(UNPROCESSABLE_ENTITY)
+      .expectHeader().contentType(APPLICATION_JSON)
+      .expectBody()
+        .jsonPath("$.message").isEqualTo("Invalid productId: -1");
+  }
+
+  @Test
+  void getReviewsCompressed() {
+
+    // The autowired client asks for gzip and decompresses, as the composite service does
+    WebTestClient identityClient = WebTestClient
+      .bindToServer(new ReactorClientHttpConnector(HttpClient.create()))
+      .baseUrl("http://localhost:" + port)
+      .build();
+    String uri = "/review?productIds=1,2,3,4,5,6,7,8,9,10";
+
+    byte[] uncompressed = identityClient.get()
+      .uri(uri)
+      .accept(APPLICATION_JSON)
+      .exchange()
+      .expectStatus().isOk()
+      .expectHeader().doesNotExist(HttpHeaders.CONTENT_ENCODING)
+      .expectBody().returnResult().getResponseBody();
+
+    long compressed = registry.get("http.server.compression.ratio").tag("encoding", "gzip").summary().count();
+    byte[] decompressed = client.get()
+      .uri(uri)
+      .accept(APPLICATION_JSON)
+      .exchange()
+      .expectStatus().isOk()
+      .expectHeader().valueEquals(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING)
+      .expectBody().returnResult().getResponseBody();
+
+    assertArrayEquals(uncompressed, decompressed);
+    assertEquals(compressed + 1, registry.get("http.server.compression.ratio").tag("encoding", "gzip").summary().count());
+
+    // Below the size threshold
+    long skipped = registry.get("http.server.compression.skipped").summary().count();
+    client.get()
+      .uri("/review/page?productId=1&pageSize=1")
+      .accept(APPLICATION_JSON)
+      .exchange()
+      .expectStatus().isOk();
+    assertEquals(skipped + 1, registry.get("http.server.compression.skipped").summary().count());
+  }
+
+  @Test
+  void createAndDeleteReviews() {
+
+    int productId = 500;
+
+    client.post()
+      .uri("/review")
+      .contentType(APPLICATION_JSON)
+      .bodyValue(new Review(productId, 1, "author", "subject", "content", null))
+      .accept(APPLICATION_JSON)
+      .exchange()
+      .expectStatus().isOk();
+
+    client.post()
+      .uri("/review")
+      .contentType(APPLICATION_JSON)
+      .bodyValue(new Review(productId, 1, "author", "subject", "content", null))
+      .accept(APPLICATION_JSON)
+      .exchange()
+      .expectStatus().isEqualTo(UNPROCESSABLE_ENTITY)
+      .expectBody()
+        .jsonPath("$.message").isEqualTo("Duplicate key, Product Id: " + productId + ", Review Id:1");
+
+    client.get()
+      .uri("/review?productId=" + productId)
+      .accept(APPLICATION_JSON)
+      .exchange()
+      .expectStatus().isOk()
+      .expectBody()
+        .jsonPath("$.length()").isEqualTo(1)
+        .jsonPath("$[0].content").isEqualTo("content");
+
+    client.delete()
+      .uri("/review?productId=" + productId)
+      .exchange()
+      .expectStatus().isOk();
+
+    client.get()
+      .uri("/review?productId=" + productId)
+      .accept(APPLICATION_JSON)
+      .exchange()
+      .expectStatus().isOk()
+      .expectBody()
+        .jsonPath("$.length()").isEqualTo(0);
+  }
+
+  @Test
+  void getReviewsSpanningSeveralChunks() {
+
+    int productId = 502;
+    int count = 600;
+
+    for (int reviewId = count; reviewId >= 1; reviewId--) {
+      client.post()
+        .uri("/review")
+        .contentType(APPLICATION_JSON)
+        .bodyValue(new Review(productId, reviewId, "author", "subject", "content", null))
+        .accept(APPLICATION_JSON)
+        .exchange()
+        .expectStatus().isOk()
+        .expectBody()
+          .jsonPath("$.reviewId").isEqualTo(reviewId);
+    }
+
+    client.get()
+      .uri("/review?productId=" + productId)
+      .accept(APPLICATION_JSON)
+      .exchange()
+      .expectStatus().isOk()
+      .expectBody()
+        .jsonPath("$.length()").isEqualTo(count)
+        .jsonPath("$[0].reviewId").isEqualTo(1)
+        .jsonPath("$[299].reviewId").isEqualTo(300)
+        .jsonPath("$[599].reviewId").isEqualTo(count);
+  }
+
+  @Test
+  void createReviewInvalidReviewId() {
+
+    client.post()
+      .uri("/review")
+      .contentType(APPLICATION_JSON)
+      .bodyValue(new Review(501, 0, "author", "subject", "content", null))
+      .accept(APPLICATION_JSON)
+      .exchange()
+      .expectStatus().isEqualTo(UNPROCESSABLE_ENTITY)
+      .expectBody()
+        .jsonPath("$.message").isEqualTo("Invalid reviewId: 0");
+  }
 }
@@ -0,0 +1,153 @@
+package se.magnus.microservices.core.review.services;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Arrays.asList;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.ByteArrayInputStream;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import se.magnus.api.core.review.Review;
+
+class ReviewStoreTest {
+
+  private ReviewStore store;
+
+  @BeforeEach
+  void setUp() {
+    store = new ReviewStore(new ObjectMapper(), new SimpleMeterRegistry(), null);
+  }
+
+  @Test
+  void reviewsAreReturnedInReviewIdOrder() {
+
+    store.add(1, 3, "a3", "s3", "c3");
+    store.add(1, 1, "a1", "s1", "c1");
+    store.add(1, 2, "a2", "s2", "c2");
+    store.add(2, 1, "other", "other", "other");
+
+    List<Review> reviews = store.find(1, 0, Integer.MAX_VALUE, "address");
+
+    assertEquals(asList(1, 2, 3), reviewIds(reviews));
+    assertEquals("a2", reviews.get(1).getAuthor());
+    assertEquals("s2", reviews.get(1).getSubject());
+    assertEquals("c2", reviews.get(1).getContent());
+    assertEquals("address", reviews.get(1).getServiceAddress());
+  }
+
+  @Test
+  void duplicatesAreRejected() {
+
+    assertTrue(store.add(1, 1, "a", "s", "c"));
+    assertTrue(store.add(1, 2, "a", "s", "c"));
+
+    assertFalse(store.add(1, 1, "a", "s", "c"));
+    assertFalse(store.add(1, 2, "a", "s", "c"));
+    assertEquals(2, store.size());
+  }
+
+  @Test
+  void findPagesAfterReviewId() {
+
+    for (int reviewId = 1; reviewId <= 10; reviewId++) {
+      store.add(1, reviewId, "a", "s", "c");
+    }
+
+    assertEquals(asList(4, 5, 6), reviewIds(store.find(1, 3, 3, "address")));
+    assertEquals(asList(10), reviewIds(store.find(1, 9, 3, "address")));
+    assertTrue(store.find(1, 10, 3, "address").isEmpty());
+    assertTrue(store.find(2, 0, 3, "address").isEmpty());
+  }
+
+  @Test
+  void findDeepPagesOfUnorderedReviews() {
+
+    // Even reviewIds first, then the odd ones in between
+    for (int reviewId = 2; reviewId <= 10000; reviewId += 2) {
+      store.add(1, reviewId, "a", "s", "c");
+    }
+    for (int reviewId = 9999; reviewId >= 1; reviewId -= 2) {
+      store.add(1, reviewId, "a", "s", "c");
+    }
+
+    assertEquals(10000, store.size());
+    assertEquals(asList(9001, 9002, 9003), reviewIds(store.find(1, 9000, 3, "address")));
+    assertEquals(asList(9999, 10000), reviewIds(store.find(1, 9998, 3, "address")));
+  }
+
+  @Test
+  void removedReviewsFreeTheirSpace() {
+
+    String content = new String(new char[1000]).replace('\0', 'x');
+    for (int productId = 1; productId <= 1000; productId++) {
+      for (int reviewId = 1; reviewId <= 3; reviewId++) {
+        store.add(productId, reviewId, "a" + productId, "s" + reviewId, content);
+      }
+    }
+
+    // Remove all but every tenth product, that both compacts the arena and shrinks the index
+    for (int productId = 1; productId <= 1000; productId++) {
+      if (productId % 10 != 0) {
+        assertEquals(3, store.removeAll(productId));
+      }
+    }
+    assertEquals(300, store.size());
+
+    for (int productId = 1; productId <= 1000; productId++) {
+      List<Review> reviews = store.find(productId, 0, Integer.MAX_VALUE, "address");
+      if (productId % 10 == 0) {
+        assertEquals(asList(1, 2, 3), reviewIds(reviews));
+        assertEquals("a" + productId, reviews.get(2).getAuthor());
+        assertEquals("s3", reviews.get(2).getSubject());
+        assertEquals(content, reviews.get(2).getContent());
+      } else {
+        assertTrue(reviews.isEmpty());
+      }
+    }
+
+    // Removed records are reused
+    assertTrue(store.add(1, 1, "new", "new", "new"));
+    assertEquals("new", store.find(1, 0, 1, "address").get(0).getAuthor());
+  }
+
+  @Test
+  void loadSnapshot() throws Exception {
+
+    String snapshot =
+      "{\"productId\":1,\"reviewId\":2,\"author\":\"a2\",\"subject\":\"s2\",\"content\":\"c2\"}\n"
+        + "{\"productId\":1,\"reviewId\":1,\"author\":\"a1\",\"subject\":\"s1\",\"content\":\"c1\"}\n"
+        + "{\"productId\":1,\"reviewId\":1,\"author\":\"a1\",\"subject\":\"s1\",\"content\":\"c1\"}\n";
+
+    int loaded = store.load(new ObjectMapper(), new ByteArrayInputStream(snapshot.getBytes(UTF_8)));
+
+    assertEquals(2, loaded);
+    assertEquals(asList(1, 2), reviewIds(store.find(1, 0, Integer.MAX_VALUE, "address")));
+  }
+
+  @Test
+  void loadSkipsInvalidIds() throws Exception {
+
+    String snapshot =
+      "{\"productId\":0,\"reviewId\":1,\"author\":\"a\",\"subject\":\"s\",\"content\":\"c\"}\n"
+        + "{\"productId\":1,\"reviewId\":0,\"author\":\"a\",\"subject\":\"s\",\"content\":\"c\"}\n"
+        + "{\"productId\":1,\"reviewId\":1,\"author\":\"a1\",\"subject\":\"s1\",\"content\":\"c1\"}\n";
+
+    int loaded = store.load(new ObjectMapper(), new ByteArrayInputStream(snapshot.getBytes(UTF_8)));
+
+    assertEquals(1, loaded);
+    assertEquals(1, store.size());
+    assertEquals(asList(1), reviewIds(store.find(1, 0, Integer.MAX_VALUE, "address")));
+    assertThrows(IllegalArgumentException.class, () -> store.add(0, 1, "a", "s", "c"));
+  }
+
+  private static List<Integer> reviewIds(List<Review> reviews) {
+    return reviews.stream().map(Review::getReviewId).collect(Collectors.toList());
+  }
+}
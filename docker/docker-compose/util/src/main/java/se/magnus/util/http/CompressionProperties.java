@@ -0,0 +1,66 @@
+package se.magnus.util.http;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+@Component
+@ConfigurationProperties(prefix = "app.compression")
+public class CompressionProperties {
+
+  private boolean enabled = true;
+
+  /**
+   * Responses smaller than this are sent uncompressed, compressing them costs more CPU than it saves
+   * in transfer time.
+   */
+  private DataSize minResponseSize = DataSize.ofKilobytes(2);
+
+  /**
+   * Deflater level from 1, fastest, to 9, smallest.
+   */
+  private int level = 6;
+
+  /**
+   * Content types that are compressed. Streamed responses, e.g. NDJSON, are never compressed so that
+   * each element is sent as soon as it is ready.
+   */
+  private List<MediaType> mimeTypes = new ArrayList<>(Arrays.asList(
+    MediaType.APPLICATION_JSON, SmileCodecCustomizer.APPLICATION_SMILE));
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  public void setEnabled(boolean enabled) {
+    this.enabled = enabled;
+  }
+
+  public DataSize getMinResponseSize() {
+    return minResponseSize;
+  }
+
+  public void setMinResponseSize(DataSize minResponseSize) {
+    this.minResponseSize = minResponseSize;
+  }
+
+  public int getLevel() {
+    return level;
+  }
+
+  public void setLevel(int level) {
+    this.level = level;
+  }
+
+  public List<MediaType> getMimeTypes() {
+    return mimeTypes;
+  }
+
+  public void setMimeTypes(List<MediaType> mimeTypes) {
+    this.mimeTypes = mimeTypes;
+  }
+}
@@ -0,0 +1,226 @@
+package se.magnus.util.http;
+
+import static org.springframework.http.HttpHeaders.ACCEPT_ENCODING;
+import static org.springframework.http.HttpHeaders.CONTENT_ENCODING;
+import static org.springframework.http.HttpHeaders.VARY;
+import static org.springframework.http.HttpStatus.NOT_MODIFIED;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+import org.reactivestreams.Publisher;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.http.server.reactive.ServerHttpResponseDecorator;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+/**
+ * Compresses responses with gzip or deflate, whichever the Accept-Encoding request header prefers, see
+ * {@link CompressionProperties}.
+ *
+ * <p>Runs inside the {@link ResponseCacheWebFilter}, so cached responses are kept compressed and are
+ * not compressed again for every hit, and outside the {@link EtagWebFilter}, so 304 responses are never
+ * compressed; the selected encoding is kept as the {@link #ENCODING_ATTRIBUTE} of the exchange, so each
+ * encoding still gets its own ETag. Records the compression ratio, original size divided by compressed
+ * size, and the CPU time spent compressing, per encoding, and the sizes of the responses that were below
+ * the threshold, to tune it.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 2)
+public class CompressionWebFilter implements WebFilter {
+
+  static final String GZIP = "gzip";
+  static final String DEFLATE = "deflate";
+  static final String ENCODING_ATTRIBUTE = CompressionWebFilter.class.getName() + ".encoding";
+
+  private final CompressionProperties properties;
+  private final Map<String, Timer> cpuTimes = new HashMap<>();
+  private final Map<String, DistributionSummary> ratios = new HashMap<>();
+  private final DistributionSummary belowThreshold;
+  private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+  @Autowired
+  public CompressionWebFilter(CompressionProperties properties, MeterRegistry registry) {
+    this.properties = properties;
+    for (String encoding : new String[] {GZIP, DEFLATE}) {
+      cpuTimes.put(encoding, Timer.builder("http.server.compression.cpu").tag("encoding", encoding)
+        .description("CPU time spent compressing responses").register(registry));
+      ratios.put(encoding, DistributionSummary.builder("http.server.compression.ratio").tag("encoding", encoding)
+        .description("Original response size divided by compressed size").register(registry));
+    }
+    this.belowThreshold = DistributionSummary.builder("http.server.compression.skipped").baseUnit("bytes")
+      .description("Sizes of compressible responses sent uncompressed because they were below the threshold")
+      .register(registry);
+  }
+
+  @Override
+  public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+    if (!properties.isEnabled()) {
+      return chain.filter(exchange);
+    }
+    String encoding = selectEncoding(exchange.getRequest().getHeaders().get(ACCEPT_ENCODING));
+    if (encoding != null) {
+      exchange.getAttributes().put(ENCODING_ATTRIBUTE, encoding);
+    }
+    return chain.filter(exchange.mutate().response(new CompressingResponse(exchange.getResponse(), encoding)).build());
+  }
+
+  /**
+   * @return gzip or deflate, the one with the higher quality and gzip if they are equal, or null if
+   *     neither is accepted
+   */
+  static String selectEncoding(List<String> acceptEncoding) {
+    if (acceptEncoding == null) {
+      return null;
+    }
+
+    float gzip = 0;
+    float deflate = 0;
+    for (String header : acceptEncoding) {
+      for (String value : header.split(",")) {
+        String[] parts = value.split(";");
+        String coding = parts[0].trim().toLowerCase();
+        float quality = 1;
+        for (int i = 1; i < parts.length; i++) {
+          String parameter = parts[i].trim();
+          if (parameter.startsWith("q=")) {
+            try {
+              quality = Float.parseFloat(parameter.substring(2));
+            } catch (NumberFormatException e) {
+              quality = 0;
+            }
+          }
+        }
+        if (GZIP.equals(coding)) {
+          gzip = quality;
+        } else if (DEFLATE.equals(coding)) {
+          deflate = quality;
+        }
+      }
+    }
+
+    if (gzip > 0 && gzip >= deflate) {
+      return GZIP;
+    }
+    return (deflate > 0) ? DEFLATE : null;
+  }
+
+  private boolean isCompressible(MediaType contentType) {
+    for (MediaType mimeType : properties.getMimeTypes()) {
+      if (mimeType.isCompatibleWith(contentType)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private byte[] compress(byte[] bytes, String encoding) {
+    boolean cpuTimeSupported = threads.isCurrentThreadCpuTimeSupported();
+    long start = cpuTimeSupported ? threads.getCurrentThreadCpuTime() : System.nanoTime();
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 4 + 64);
+    try (OutputStream compressor = GZIP.equals(encoding)
+      ? new LevelGzipOutputStream(out, properties.getLevel()) : new LevelDeflaterOutputStream(out, properties.getLevel())) {
+      compressor.write(bytes);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    byte[] compressed = out.toByteArray();
+
+    long nanos = (cpuTimeSupported ? threads.getCurrentThreadCpuTime() : System.nanoTime()) - start;
+    cpuTimes.get(encoding).record(nanos, TimeUnit.NANOSECONDS);
+    ratios.get(encoding).record((double) bytes.length / compressed.length);
+    return compressed;
+  }
+
+  /**
+   * The JDK streams have no constructor for the compression level, their own Deflater is ended on close.
+   */
+  private static final class LevelGzipOutputStream extends GZIPOutputStream {
+
+    LevelGzipOutputStream(OutputStream out, int level) throws IOException {
+      super(out);
+      def.setLevel(level);
+    }
+  }
+
+  private static final class LevelDeflaterOutputStream extends DeflaterOutputStream {
+
+    LevelDeflaterOutputStream(OutputStream out, int level) {
+      super(out);
+      def.setLevel(level);
+    }
+  }
+
+  private class CompressingResponse extends ServerHttpResponseDecorator {
+
+    private final String encoding;
+
+    CompressingResponse(ServerHttpResponse delegate, String encoding) {
+      super(delegate);
+      this.encoding = encoding;
+    }
+
+    @Override
+    public Mono<Void> writeWith(Publisher<? extends DataBuffer> body) {
+      HttpHeaders headers = getHeaders();
+      MediaType contentType = headers.getContentType();
+      if (contentType == null || !isCompressible(contentType) || headers.containsKey(CONTENT_ENCODING)) {
+        return super.writeWith(body);
+      }
+
+      headers.add(VARY, ACCEPT_ENCODING);
+      if (encoding == null) {
+        return super.writeWith(body);
+      }
+
+      return DataBufferUtils.join(body).flatMap(joined -> {
+        byte[] bytes = new byte[joined.readableByteCount()];
+        joined.read(bytes);
+        DataBufferUtils.release(joined);
+
+        if (bytes.length < properties.getMinResponseSize().toBytes()) {
+          belowThreshold.record(bytes.length);
+          return super.writeWith(Mono.just(bufferFactory().wrap(bytes)));
+        }
+
+        byte[] compressed = compress(bytes, encoding);
+        headers.set(CONTENT_ENCODING, encoding);
+        headers.setContentLength(compressed.length);
+        return super.writeWith(Mono.just(bufferFactory().wrap(compressed)));
+      });
+    }
+
+    @Override
+    public Mono<Void> setComplete() {
+      // A 304 from the EtagWebFilter varies as the response it stands for would have
+      MediaType contentType = getHeaders().getContentType();
+      if (getStatusCode() == NOT_MODIFIED && contentType != null && isCompressible(contentType)) {
+        getHeaders().add(VARY, ACCEPT_ENCODING);
+      }
+      return super.setComplete();
+    }
+  }
+}
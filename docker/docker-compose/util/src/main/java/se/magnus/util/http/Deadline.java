@@ -0,0 +1,36 @@
+package se.magnus.util.http;
+
+import java.time.Duration;
+
+/**
+ * Point in time after which nobody is waiting for the result of a request anymore.
+ *
+ * <p>The deadline of the current request is kept in the Reactor context, keyed by this class, and is
+ * passed on to other services as the remaining budget in the {@link #HEADER} request header.
+ */
+public class Deadline {
+
+  public static final String HEADER = "X-Request-Budget-Ms";
+
+  private static final Duration MAX_BUDGET = Duration.ofNanos(Long.MAX_VALUE / 2);
+
+  private final long expiresAtNanos;
+
+  private Deadline(long expiresAtNanos) {
+    this.expiresAtNanos = expiresAtNanos;
+  }
+
+  public static Deadline after(Duration budget) {
+    // Deadlines are compared by difference, which stays correct for budgets of up to 2^62 ns
+    long budgetNanos = (budget.compareTo(MAX_BUDGET) > 0) ? MAX_BUDGET.toNanos() : budget.toNanos();
+    return new Deadline(System.nanoTime() + budgetNanos);
+  }
+
+  public Duration remaining() {
+    return Duration.ofNanos(expiresAtNanos - System.nanoTime());
+  }
+
+  public boolean isExpired() {
+    return expiresAtNanos - System.nanoTime() <= 0;
+  }
+}
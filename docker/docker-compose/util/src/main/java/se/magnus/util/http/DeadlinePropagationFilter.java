@@ -0,0 +1,42 @@
+package se.magnus.util.http;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.TimeoutException;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+import reactor.core.publisher.Mono;
+
+/**
+ * Passes the remaining budget of the current request on to the called service, see {@link Deadline}.
+ *
+ * <p>Calls made after the deadline has passed are not sent, and calls still waiting for a response
+ * when it passes are cancelled.
+ */
+public class DeadlinePropagationFilter implements ExchangeFilterFunction {
+
+  @Override
+  public Mono<ClientResponse> filter(ClientRequest request, ExchangeFunction next) {
+    return Mono.deferContextual(context -> {
+
+      Optional<Deadline> deadline = context.getOrEmpty(Deadline.class);
+      if (!deadline.isPresent()) {
+        return next.exchange(request);
+      }
+
+      Duration remaining = deadline.get().remaining();
+      if (remaining.isNegative() || remaining.isZero()) {
+        return Mono.error(new TimeoutException("Deadline exceeded, did not send request to: " + request.url()));
+      }
+
+      ClientRequest requestWithBudget = ClientRequest.from(request)
+        .header(Deadline.HEADER, String.valueOf(remaining.toMillis()))
+        .build();
+
+      return next.exchange(requestWithBudget)
+        .timeout(remaining, Mono.error(() -> new TimeoutException("Deadline exceeded while waiting for: " + request.url())));
+    });
+  }
+}
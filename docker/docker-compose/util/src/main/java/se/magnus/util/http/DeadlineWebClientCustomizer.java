@@ -0,0 +1,14 @@
+package se.magnus.util.http;
+
+import org.springframework.boot.web.reactive.function.client.WebClientCustomizer;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+
+@Component
+class DeadlineWebClientCustomizer implements WebClientCustomizer {
+
+  @Override
+  public void customize(WebClient.Builder webClientBuilder) {
+    webClientBuilder.filter(new DeadlinePropagationFilter());
+  }
+}
@@ -0,0 +1,87 @@
+package se.magnus.util.http;
+
+import static org.springframework.http.HttpStatus.GATEWAY_TIMEOUT;
+
+import java.time.Duration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+import reactor.util.context.Context;
+
+/**
+ * Enforces the deadline of incoming requests.
+ *
+ * <p>The deadline is taken from the {@link Deadline#HEADER} request header or, if there is none, from
+ * the "app.request-budget" property; requests get no deadline if neither is set. Header values that are
+ * not positive are ignored and larger ones are capped at "app.request-budget-max". A request that
+ * arrives after its deadline is rejected without being processed, and a request that is still being
+ * processed when its deadline passes is cancelled, which also cancels any calls it has made to other
+ * services. Both are answered with 504 Gateway Timeout.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class DeadlineWebFilter implements WebFilter {
+
+  private static final Logger LOG = LoggerFactory.getLogger(DeadlineWebFilter.class);
+
+  private final Duration defaultBudget;
+  private final long maxBudgetMillis;
+
+  @Autowired
+  public DeadlineWebFilter(
+    @Value("${app.request-budget:0ms}") Duration defaultBudget,
+    @Value("${app.request-budget-max:60s}") Duration maxBudget) {
+
+    this.defaultBudget = defaultBudget;
+    this.maxBudgetMillis = maxBudget.toMillis();
+  }
+
+  @Override
+  public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+
+    Duration budget = getBudget(exchange);
+    if (budget == null) {
+      return chain.filter(exchange);
+    }
+
+    Deadline deadline = Deadline.after(budget);
+    if (deadline.isExpired()) {
+      LOG.debug("Deadline already passed for path: {}, will not process it", exchange.getRequest().getPath());
+      return Mono.error(new ResponseStatusException(GATEWAY_TIMEOUT, "Deadline exceeded before the request was processed"));
+    }
+
+    return chain.filter(exchange)
+      .timeout(budget, Mono.defer(() -> {
+        LOG.debug("Deadline passed while processing path: {}, cancelled it", exchange.getRequest().getPath());
+        return Mono.error(new ResponseStatusException(GATEWAY_TIMEOUT, "Deadline exceeded while the request was processed"));
+      }))
+      .contextWrite(Context.of(Deadline.class, deadline));
+  }
+
+  private Duration getBudget(ServerWebExchange exchange) {
+
+    String header = exchange.getRequest().getHeaders().getFirst(Deadline.HEADER);
+    if (header != null) {
+      try {
+        long budgetMillis = Long.parseLong(header.trim());
+        if (budgetMillis > 0) {
+          return Duration.ofMillis(Math.min(budgetMillis, maxBudgetMillis));
+        }
+      } catch (NumberFormatException ex) {
+        // Ignored below
+      }
+      LOG.debug("Ignoring invalid {} header: {}", Deadline.HEADER, header);
+    }
+
+    return defaultBudget.isZero() ? null : defaultBudget;
+  }
+}
@@ -0,0 +1,118 @@
+package se.magnus.util.http;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.springframework.http.HttpStatus.OK;
+
+import org.reactivestreams.Publisher;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpResponseDecorator;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+import reactor.util.context.Context;
+
+/**
+ * Adds a strong ETag to 200 JSON and Smile responses to GET requests, and answers requests whose
+ * If-None-Match header matches it with 304 Not Modified and no body.
+ *
+ * <p>The ETag is an MD5 hash of the body before compression, tagged with the content encoding the
+ * {@link CompressionWebFilter} selected for the request, so each representation of a resource gets its
+ * own. Handlers that know the version of the data behind a response set it as its {@link ResponseVersion};
+ * the ETag is then a hash of that version and the content type, tagged the same way, and the body is
+ * passed on without being buffered.
+ *
+ * <p>Runs inside the {@link ResponseCacheWebFilter}, so cached responses keep their ETag and are not
+ * hashed again, and inside the {@link CompressionWebFilter}, so a 304 is answered before the body is
+ * compressed, or, for versioned responses, even encoded.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 3)
+public class EtagWebFilter implements WebFilter {
+
+  private final boolean enabled;
+
+  @Autowired
+  public EtagWebFilter(@Value("${app.etag.enabled:true}") boolean enabled) {
+    this.enabled = enabled;
+  }
+
+  @Override
+  public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+    if (!enabled || exchange.getRequest().getMethod() != HttpMethod.GET) {
+      return chain.filter(exchange);
+    }
+
+    ResponseVersion version = new ResponseVersion();
+    return chain.filter(exchange.mutate().response(new EtagResponse(exchange, version)).build())
+      .contextWrite(Context.of(ResponseVersion.class, version));
+  }
+
+  static boolean isVersioned(MediaType contentType) {
+    return MediaType.APPLICATION_JSON.isCompatibleWith(contentType) || SmileCodecCustomizer.APPLICATION_SMILE.isCompatibleWith(contentType);
+  }
+
+  private static String etagOf(byte[] bytes, String encoding) {
+    String hash = DigestUtils.md5DigestAsHex(bytes);
+    return "\"" + ((encoding == null) ? hash : hash + "-" + encoding) + "\"";
+  }
+
+  private static class EtagResponse extends ServerHttpResponseDecorator {
+
+    private final ServerWebExchange exchange;
+    private final ResponseVersion version;
+
+    EtagResponse(ServerWebExchange exchange, ResponseVersion version) {
+      super(exchange.getResponse());
+      this.exchange = exchange;
+      this.version = version;
+    }
+
+    @Override
+    public Mono<Void> writeWith(Publisher<? extends DataBuffer> body) {
+      HttpStatus status = getStatusCode();
+      HttpHeaders headers = getHeaders();
+      MediaType contentType = headers.getContentType();
+      if ((status != null && status != OK) || contentType == null || !isVersioned(contentType)) {
+        return super.writeWith(body);
+      }
+
+      String encoding = exchange.getAttribute(CompressionWebFilter.ENCODING_ATTRIBUTE);
+      if (version.get() != null) {
+        String etag = etagOf((version.get() + " " + contentType).getBytes(UTF_8), encoding);
+        if (exchange.checkNotModified(etag)) {
+          // The body is not subscribed to, so it is neither encoded nor compressed
+          return notModified();
+        }
+        return super.writeWith(body);
+      }
+
+      return DataBufferUtils.join(body).flatMap(joined -> {
+        byte[] bytes = new byte[joined.readableByteCount()];
+        joined.read(bytes);
+        DataBufferUtils.release(joined);
+
+        if (exchange.checkNotModified(etagOf(bytes, encoding))) {
+          return notModified();
+        }
+        return super.writeWith(Mono.just(bufferFactory().wrap(bytes)));
+      });
+    }
+
+    private Mono<Void> notModified() {
+      getHeaders().remove(HttpHeaders.CONTENT_LENGTH);
+      return setComplete();
+    }
+  }
+}
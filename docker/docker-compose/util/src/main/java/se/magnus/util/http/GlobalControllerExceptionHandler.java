@@ -1,12 +1,16 @@
 package se.magnus.util.http;
 
+import static org.springframework.http.HttpStatus.GATEWAY_TIMEOUT;
 import static org.springframework.http.HttpStatus.NOT_FOUND;
 import static org.springframework.http.HttpStatus.UNPROCESSABLE_ENTITY;
+import static org.springframework.http.MediaType.APPLICATION_JSON;
 
+import java.util.concurrent.TimeoutException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.bind.annotation.ResponseStatus;
@@ -22,26 +26,38 @@ class GlobalControllerExceptionHandler {
   @ResponseStatus(NOT_FOUND)
   @ExceptionHandler(NotFoundException.class)
   public @ResponseBody HttpErrorInfo handleNotFoundExceptions(
-    ServerHttpRequest request, NotFoundException ex) {
+    ServerHttpRequest request, ServerHttpResponse response, NotFoundException ex) {
 
-    return createHttpErrorInfo(NOT_FOUND, request, ex);
+    return createHttpErrorInfo(NOT_FOUND, request, response, ex);
   }
 
   @ResponseStatus(UNPROCESSABLE_ENTITY)
   @ExceptionHandler(InvalidInputException.class)
   public @ResponseBody HttpErrorInfo handleInvalidInputException(
-    ServerHttpRequest request, InvalidInputException ex) {
+    ServerHttpRequest request, ServerHttpResponse response, InvalidInputException ex) {
 
-    return createHttpErrorInfo(UNPROCESSABLE_ENTITY, request, ex);
+    return createHttpErrorInfo(UNPROCESSABLE_ENTITY, request, response, ex);
   }
 
+  @ResponseStatus(GATEWAY_TIMEOUT)
+  @ExceptionHandler(TimeoutException.class)
+  public @ResponseBody HttpErrorInfo handleTimeoutException(
+    ServerHttpRequest request, ServerHttpResponse response, TimeoutException ex) {
+
+    return createHttpErrorInfo(GATEWAY_TIMEOUT, request, response, ex);
+  }
+
+  /**
+   * Errors are always JSON, also for callers that ask for Smile, so that they can be read in logs.
+   */
   private HttpErrorInfo createHttpErrorInfo(
-    HttpStatus httpStatus, ServerHttpRequest request, Exception ex) {
+    HttpStatus httpStatus, ServerHttpRequest request, ServerHttpResponse response, Exception ex) {
 
     final String path = request.getPath().pathWithinApplication().value();
     final String message = ex.getMessage();
 
     LOG.debug("Returning HTTP status: {} for path: {}, message: {}", httpStatus, path, message);
+    response.getHeaders().setContentType(APPLICATION_JSON);
     return new HttpErrorInfo(httpStatus, path, message);
   }
 }
@@ -0,0 +1,134 @@
+package se.magnus.util.http;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+
+/**
+ * Encoded response bodies of GET endpoints, keyed by request and grouped by productId, see
+ * {@link ResponseCacheWebFilter}.
+ *
+ * <p>Services call {@link #invalidate(int)} whenever the data of a product changes. Invalidation bumps a
+ * generation, and a response is only stored if no invalidation happened while it was produced, so a read
+ * that races with a change can not put the old data back.
+ */
+@Component
+public class ResponseCache {
+
+  private final Cache<Key, CachedResponse> cache;
+  private final AtomicLong generation = new AtomicLong();
+
+  private final Counter hits;
+  private final Counter misses;
+  private final Counter servedBytes;
+
+  @Autowired
+  public ResponseCache(ResponseCacheProperties properties, MeterRegistry registry) {
+
+    this.cache = Caffeine.newBuilder()
+      .maximumWeight(properties.getMaxSize().toBytes())
+      .weigher((Key key, CachedResponse response) -> response.body.length + key.request.length())
+      .expireAfterWrite(properties.getTtl())
+      .build();
+
+    this.hits = Counter.builder("response.cache.requests").tag("result", "hit").register(registry);
+    this.misses = Counter.builder("response.cache.requests").tag("result", "miss").register(registry);
+    this.servedBytes = Counter.builder("response.cache.served").baseUnit("bytes")
+      .description("Response body bytes written from the cache").register(registry);
+    Gauge.builder("response.cache.size", cache, c -> c.policy().eviction().get().weightedSize().orElse(0))
+      .baseUnit("bytes").register(registry);
+    Gauge.builder("response.cache.entries", cache, Cache::estimatedSize).register(registry);
+  }
+
+  /**
+   * Drops the cached responses of a product. Walks all entries, which is fine as long as changes are rare
+   * compared to reads.
+   */
+  public void invalidate(int productId) {
+    generation.incrementAndGet();
+    cache.asMap().keySet().removeIf(key -> key.productId == productId);
+  }
+
+  CachedResponse get(Key key) {
+    CachedResponse response = cache.getIfPresent(key);
+    if (response == null) {
+      misses.increment();
+    } else {
+      hits.increment();
+      servedBytes.increment(response.body.length);
+    }
+    return response;
+  }
+
+  long generation() {
+    return generation.get();
+  }
+
+  /**
+   * Stores the response unless the data was invalidated since generation was read.
+   */
+  void put(Key key, long generation, CachedResponse response) {
+    if (this.generation.get() != generation) {
+      return;
+    }
+    cache.put(key, response);
+    if (this.generation.get() != generation) {
+      cache.invalidate(key);
+    }
+  }
+
+  static final class Key {
+
+    private final int productId;
+    private final String request;
+
+    Key(int productId, String request) {
+      this.productId = productId;
+      this.request = request;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) o;
+      return productId == other.productId && request.equals(other.request);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(productId, request);
+    }
+  }
+
+  static final class CachedResponse {
+
+    final HttpHeaders headers = new HttpHeaders();
+    final byte[] body;
+
+    /**
+     * Keeps the headers that describe the body, Content-Type, Content-Encoding, Vary and ETag.
+     */
+    CachedResponse(HttpHeaders responseHeaders, byte[] body) {
+      for (String name : new String[] {HttpHeaders.CONTENT_TYPE, HttpHeaders.CONTENT_ENCODING, HttpHeaders.VARY, HttpHeaders.ETAG}) {
+        List<String> values = responseHeaders.get(name);
+        if (values != null) {
+          headers.addAll(name, values);
+        }
+      }
+      this.body = body;
+    }
+  }
+}
@@ -0,0 +1,54 @@
+package se.magnus.util.http;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+@Component
+@ConfigurationProperties(prefix = "app.response-cache")
+public class ResponseCacheProperties {
+
+  /**
+   * Path patterns of the GET endpoints whose responses are cached, e.g. "/product/{productId}" or "/review".
+   * The productId is taken from the "productId" path variable or query parameter; requests without one are
+   * not cached. Nothing is cached if no paths are given.
+   */
+  private List<String> paths = new ArrayList<>();
+
+  /**
+   * Max total size of the cached response bodies.
+   */
+  private DataSize maxSize = DataSize.ofMegabytes(64);
+
+  /**
+   * Max age of a cached response, for data that can change without going through this service.
+   */
+  private Duration ttl = Duration.ofMinutes(10);
+
+  public List<String> getPaths() {
+    return paths;
+  }
+
+  public void setPaths(List<String> paths) {
+    this.paths = paths;
+  }
+
+  public DataSize getMaxSize() {
+    return maxSize;
+  }
+
+  public void setMaxSize(DataSize maxSize) {
+    this.maxSize = maxSize;
+  }
+
+  public Duration getTtl() {
+    return ttl;
+  }
+
+  public void setTtl(Duration ttl) {
+    this.ttl = ttl;
+  }
+}
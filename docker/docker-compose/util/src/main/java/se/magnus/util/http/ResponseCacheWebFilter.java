@@ -0,0 +1,141 @@
+package se.magnus.util.http;
+
+import static org.springframework.http.HttpStatus.OK;
+
+import java.util.List;
+import java.util.stream.Collectors;
+import org.reactivestreams.Publisher;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.http.server.reactive.ServerHttpResponseDecorator;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import org.springframework.web.util.pattern.PathPattern;
+import org.springframework.web.util.pattern.PathPatternParser;
+import reactor.core.publisher.Mono;
+
+/**
+ * Serves GET requests of the configured paths, see {@link ResponseCacheProperties}, from the encoded
+ * response bodies in the {@link ResponseCache}.
+ *
+ * <p>On a hit the cached bytes are wrapped, not copied, into the response buffer, so the controller is not
+ * called and nothing is built or serialized. Hits whose If-None-Match header matches the cached ETag are
+ * answered with 304 Not Modified. On a miss the response is produced as usual and its body is
+ * kept, compressed if it was, if it is a 200 JSON or Smile response; streamed responses, e.g. NDJSON, and errors are never cached.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 1)
+public class ResponseCacheWebFilter implements WebFilter {
+
+  private static final String PRODUCT_ID = "productId";
+
+  private final ResponseCache cache;
+  private final List<PathPattern> paths;
+
+  @Autowired
+  public ResponseCacheWebFilter(ResponseCache cache, ResponseCacheProperties properties) {
+    this.cache = cache;
+    this.paths = properties.getPaths().stream().map(PathPatternParser.defaultInstance::parse).collect(Collectors.toList());
+  }
+
+  @Override
+  public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+
+    ServerHttpRequest request = exchange.getRequest();
+    if (paths.isEmpty() || request.getMethod() != HttpMethod.GET) {
+      return chain.filter(exchange);
+    }
+
+    Integer productId = getProductId(request);
+    if (productId == null) {
+      return chain.filter(exchange);
+    }
+
+    // Different Accept and Accept-Encoding headers may get different representations of the same resource
+    String uri = request.getURI().getRawPath() + "?" + request.getURI().getRawQuery();
+    ResponseCache.Key key = new ResponseCache.Key(productId, uri
+      + " " + request.getHeaders().getFirst(HttpHeaders.ACCEPT)
+      + " " + request.getHeaders().getFirst(HttpHeaders.ACCEPT_ENCODING));
+
+    ResponseCache.CachedResponse cached = cache.get(key);
+    if (cached != null) {
+      ServerHttpResponse response = exchange.getResponse();
+      response.setStatusCode(OK);
+      response.getHeaders().addAll(cached.headers);
+      String etag = cached.headers.getETag();
+      if (etag != null && exchange.checkNotModified(etag)) {
+        return response.setComplete();
+      }
+      response.getHeaders().setContentLength(cached.body.length);
+      return response.writeWith(Mono.fromSupplier(() -> response.bufferFactory().wrap(cached.body)));
+    }
+
+    long generation = cache.generation();
+    return chain.filter(exchange.mutate().response(new CachingResponse(exchange.getResponse(), key, generation)).build());
+  }
+
+  /**
+   * @return the productId of a request to one of the cached paths, or null
+   */
+  private Integer getProductId(ServerHttpRequest request) {
+    for (PathPattern path : paths) {
+      PathPattern.PathMatchInfo match = path.matchAndExtract(request.getPath().pathWithinApplication());
+      if (match != null) {
+        String productId = match.getUriVariables().get(PRODUCT_ID);
+        if (productId == null) {
+          productId = request.getQueryParams().getFirst(PRODUCT_ID);
+        }
+        try {
+          return (productId == null) ? null : Integer.valueOf(productId);
+        } catch (NumberFormatException e) {
+          return null;
+        }
+      }
+    }
+    return null;
+  }
+
+  private static boolean isCacheable(MediaType contentType) {
+    return MediaType.APPLICATION_JSON.isCompatibleWith(contentType) || SmileCodecCustomizer.APPLICATION_SMILE.isCompatibleWith(contentType);
+  }
+
+  private class CachingResponse extends ServerHttpResponseDecorator {
+
+    private final ResponseCache.Key key;
+    private final long generation;
+
+    CachingResponse(ServerHttpResponse delegate, ResponseCache.Key key, long generation) {
+      super(delegate);
+      this.key = key;
+      this.generation = generation;
+    }
+
+    @Override
+    public Mono<Void> writeWith(Publisher<? extends DataBuffer> body) {
+      HttpStatus status = getStatusCode();
+      MediaType contentType = getHeaders().getContentType();
+      if ((status != null && status != OK) || contentType == null || !isCacheable(contentType)) {
+        return super.writeWith(body);
+      }
+
+      return DataBufferUtils.join(body).flatMap(joined -> {
+        byte[] bytes = new byte[joined.readableByteCount()];
+        joined.read(bytes);
+        DataBufferUtils.release(joined);
+        cache.put(key, generation, new ResponseCache.CachedResponse(getHeaders(), bytes));
+        return super.writeWith(Mono.just(bufferFactory().wrap(bytes)));
+      });
+    }
+  }
+}
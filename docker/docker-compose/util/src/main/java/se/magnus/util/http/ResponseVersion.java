@@ -0,0 +1,32 @@
+package se.magnus.util.http;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * Version of the data the response to the current request is built from, set by handlers that know it
+ * without looking at the response body, e.g. from the ETags of the responses they aggregate.
+ *
+ * <p>Kept in the Reactor context, keyed by this class, by the {@link EtagWebFilter}, which derives the
+ * ETag of the response from it instead of from the body.
+ */
+public final class ResponseVersion {
+
+  private volatile String version;
+
+  ResponseVersion() {
+  }
+
+  /**
+   * Sets the version of the current response, a null version makes the ETag be computed from the body.
+   */
+  public static Mono<Void> set(String version) {
+    return Mono.deferContextual(context -> {
+      context.<ResponseVersion>getOrEmpty(ResponseVersion.class).ifPresent(holder -> holder.version = version);
+      return Mono.empty();
+    });
+  }
+
+  String get() {
+    return version;
+  }
+}
@@ -0,0 +1,78 @@
+package se.magnus.util.warmup;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.concurrent.atomic.AtomicLong;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Calls the configured paths of the service itself for a number of rounds, through the whole stack: HTTP
+ * server, filters, controller, codecs. That gets the hot paths JIT compiled and all lazy initialization done.
+ *
+ * <p>The duration of the first and the last round is kept in warmup.requests.round, to show the effect of
+ * the warm-up. Failed responses are ignored, only the work done to produce them matters.
+ */
+@Component
+@Order(Ordered.LOWEST_PRECEDENCE)
+class RequestWarmupTask implements WarmupTask {
+
+  private final WebClient.Builder webClientBuilder;
+  private final Environment environment;
+  private final WarmupProperties properties;
+
+  private final AtomicLong firstRoundMillis = new AtomicLong();
+  private final AtomicLong lastRoundMillis = new AtomicLong();
+
+  @Autowired
+  RequestWarmupTask(WebClient.Builder webClientBuilder, Environment environment, WarmupProperties properties, MeterRegistry registry) {
+    this.webClientBuilder = webClientBuilder;
+    this.environment = environment;
+    this.properties = properties;
+
+    Gauge.builder("warmup.requests.round", firstRoundMillis, AtomicLong::get)
+      .tag("round", "first").baseUnit("milliseconds").register(registry);
+    Gauge.builder("warmup.requests.round", lastRoundMillis, AtomicLong::get)
+      .tag("round", "last").baseUnit("milliseconds").register(registry);
+  }
+
+  @Override
+  public String getName() {
+    return "requests";
+  }
+
+  @Override
+  public Mono<Void> run() {
+
+    if (properties.getRequests().isEmpty()) {
+      return Mono.empty();
+    }
+
+    WebClient client = webClientBuilder.clone()
+      .baseUrl("http://localhost:" + environment.getProperty("local.server.port"))
+      .build();
+
+    return Flux.range(1, properties.getIterations())
+      .concatMap(round -> Mono.defer(() -> {
+        long start = System.nanoTime();
+        return Flux.fromIterable(properties.getRequests())
+          .flatMap(path -> Flux.range(0, properties.getConcurrency())
+            .flatMap(i -> client.get().uri(path).exchangeToMono(ClientResponse::releaseBody).onErrorResume(e -> Mono.empty())))
+          .then(Mono.fromRunnable(() -> {
+            long millis = (System.nanoTime() - start) / 1_000_000;
+            if (round == 1) {
+              firstRoundMillis.set(millis);
+            }
+            lastRoundMillis.set(millis);
+          }));
+      }))
+      .then();
+  }
+}
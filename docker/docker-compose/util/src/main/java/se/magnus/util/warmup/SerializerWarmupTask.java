@@ -0,0 +1,43 @@
+package se.magnus.util.warmup;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.util.Arrays;
+import java.util.List;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import se.magnus.util.http.SmileCodecCustomizer;
+
+/**
+ * Builds the Jackson serializers and deserializers of the configured types, and of the types they refer to,
+ * in the ObjectMappers the JSON and Smile HTTP codecs use; Jackson otherwise builds them on first use, i.e.
+ * on a request.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+class SerializerWarmupTask implements WarmupTask {
+
+  private final List<ObjectMapper> mappers;
+  private final WarmupProperties properties;
+
+  @Autowired
+  SerializerWarmupTask(ObjectMapper mapper, SmileCodecCustomizer smileCodecs, WarmupProperties properties) {
+    this.mappers = Arrays.asList(mapper, smileCodecs.getObjectMapper());
+    this.properties = properties;
+  }
+
+  @Override
+  public String getName() {
+    return "serializers";
+  }
+
+  @Override
+  public Mono<Void> run() {
+    return Mono.fromRunnable(() -> mappers.forEach(mapper -> properties.getSerializers().forEach(type -> {
+      mapper.writerFor(type);
+      mapper.readerFor(type);
+    })));
+  }
+}
@@ -0,0 +1,33 @@
+package se.magnus.util.warmup;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import se.magnus.util.http.ServiceUtil;
+
+/**
+ * Resolves the host name and address of the service, a blocking lookup on first use otherwise.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 1)
+class ServiceAddressWarmupTask implements WarmupTask {
+
+  private final ServiceUtil serviceUtil;
+
+  @Autowired
+  ServiceAddressWarmupTask(ServiceUtil serviceUtil) {
+    this.serviceUtil = serviceUtil;
+  }
+
+  @Override
+  public String getName() {
+    return "service-address";
+  }
+
+  @Override
+  public Mono<Void> run() {
+    return Mono.fromRunnable(serviceUtil::getServiceAddress);
+  }
+}
@@ -0,0 +1,88 @@
+package se.magnus.util.warmup;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "app.warmup")
+public class WarmupProperties {
+
+  private boolean enabled = true;
+
+  /**
+   * Max time of each task, the service becomes ready when the time is up even if the task is not done.
+   */
+  private Duration timeout = Duration.ofSeconds(30);
+
+  /**
+   * Types whose JSON serializers and deserializers are built up front.
+   */
+  private List<Class<?>> serializers = new ArrayList<>();
+
+  /**
+   * Paths of this service that are called, with query string, to warm up the request handling.
+   */
+  private List<String> requests = new ArrayList<>();
+
+  /**
+   * Number of rounds of requests.
+   */
+  private int iterations = 20;
+
+  /**
+   * Number of concurrent requests per path in each round, also the number of connections opened per
+   * downstream host.
+   */
+  private int concurrency = 4;
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  public void setEnabled(boolean enabled) {
+    this.enabled = enabled;
+  }
+
+  public Duration getTimeout() {
+    return timeout;
+  }
+
+  public void setTimeout(Duration timeout) {
+    this.timeout = timeout;
+  }
+
+  public List<Class<?>> getSerializers() {
+    return serializers;
+  }
+
+  public void setSerializers(List<Class<?>> serializers) {
+    this.serializers = serializers;
+  }
+
+  public List<String> getRequests() {
+    return requests;
+  }
+
+  public void setRequests(List<String> requests) {
+    this.requests = requests;
+  }
+
+  public int getIterations() {
+    return iterations;
+  }
+
+  public void setIterations(int iterations) {
+    this.iterations = iterations;
+  }
+
+  public int getConcurrency() {
+    return concurrency;
+  }
+
+  public void setConcurrency(int concurrency) {
+    this.concurrency = concurrency;
+  }
+}
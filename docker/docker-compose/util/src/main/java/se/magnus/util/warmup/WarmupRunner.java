@@ -0,0 +1,68 @@
+package se.magnus.util.warmup;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.util.List;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.availability.AvailabilityChangeEvent;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.context.ApplicationContext;
+import org.springframework.stereotype.Component;
+
+/**
+ * Runs the {@link WarmupTask}s after the web server has started and before the service is ready.
+ *
+ * <p>Spring Boot reports readiness as ACCEPTING_TRAFFIC only after all application runners have returned,
+ * so the readiness probe, /actuator/health/readiness, stays OUT_OF_SERVICE until the warm-up is done.
+ * Each task is timed in warmup.task, the whole warm-up in warmup.duration.
+ */
+@Component
+class WarmupRunner implements ApplicationRunner {
+
+  private static final Logger LOG = LoggerFactory.getLogger(WarmupRunner.class);
+
+  private final ApplicationContext context;
+  private final List<WarmupTask> tasks;
+  private final WarmupProperties properties;
+  private final MeterRegistry registry;
+
+  @Autowired
+  WarmupRunner(ApplicationContext context, List<WarmupTask> tasks, WarmupProperties properties, MeterRegistry registry) {
+    this.context = context;
+    this.tasks = tasks;
+    this.properties = properties;
+    this.registry = registry;
+  }
+
+  @Override
+  public void run(ApplicationArguments args) {
+
+    if (!properties.isEnabled()) {
+      LOG.info("Warm-up is disabled");
+      return;
+    }
+
+    AvailabilityChangeEvent.publish(context, ReadinessState.REFUSING_TRAFFIC);
+
+    Timer.Sample warmup = Timer.start(registry);
+    for (WarmupTask task : tasks) {
+      Timer.Sample sample = Timer.start(registry);
+      String outcome = "success";
+      try {
+        task.run().block(properties.getTimeout());
+      } catch (RuntimeException e) {
+        outcome = "failure";
+        LOG.warn("Warm-up task {} failed, continues with the next one: {}", task.getName(), e.toString());
+      }
+      long nanos = sample.stop(registry.timer("warmup.task", "task", task.getName(), "outcome", outcome));
+      LOG.info("Warm-up task {} done in {} ms", task.getName(), nanos / 1_000_000);
+    }
+    long nanos = warmup.stop(registry.timer("warmup.duration"));
+
+    LOG.info("Warm-up done in {} ms", nanos / 1_000_000);
+  }
+}
@@ -0,0 +1,16 @@
+package se.magnus.util.warmup;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * One step of the warm-up that runs before the service reports itself ready, see {@link WarmupRunner}.
+ *
+ * <p>Register a task as a bean; tasks run one after the other in bean order. A failing task is logged and
+ * does not stop the warm-up or the service.
+ */
+public interface WarmupTask {
+
+  String getName();
+
+  Mono<Void> run();
+}